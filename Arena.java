@@ -0,0 +1,353 @@
+// Headless round robin between computer strategies: every strategy plays every other one for a number of seeded
+// games (each side shooting first in half of them), spread over a fork/join pool like SimulationRunner.
+// Reports a rating per strategy (Bradley-Terry fit of all results on the Elo scale, so it does not depend on the
+// order the games finished in), the average shots to win with a 95% confidence interval, and the p50/p99 time of
+// one chooseShotCell call. Strategies run without a latency budget, so slow ones are measured, not replaced, and
+// as Provider.createFixed builds them: a fixed amount of work per decision (the presets' default sample counts on
+// one worker each) and no deadline anywhere, so the ratings follow from the seed alone, not from the machine.
+// Rough cost of one game on one core: Easy, Normal and Hard under 1 ms, Expert about 1 s. A pairing costs the sum
+// for its two strategies per game, spread over the threads: 1000 games of Expert vs Hard take about 17 min on one
+// core, 2 min on eight.
+// Usage: java Arena [games per pairing] [threads] [seed] [strategy names...]  (all registered ones by default)
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class Arena
+{
+    private static final int GAMES_PER_TASK = 64;       // leaf size of the fork/join split
+    private static final double BASE_RATING = 1500;
+    private static final double PRIOR_WINS = 0.5;       // per pairing and side, keeps an unbeaten strategy finite
+
+    private final GameRules rules;
+    private final List<ShotStrategy.Provider> strategies;
+
+    public Arena(GameRules rules, List<ShotStrategy.Provider> strategies)
+    {
+        if (strategies.size() < 2)
+        {
+            throw new IllegalArgumentException("an arena needs at least two strategies");
+        }
+        this.rules = rules;
+        this.strategies = new ArrayList<>(strategies);
+    }
+
+    // Plays games games for every pairing on a pool with the given number of threads
+    public Standings run(int games, int threads, long seed)
+    {
+        int n = strategies.size();
+        int[][] pairings = new int[n * (n - 1) / 2][];
+        for (int a = 0, p = 0; a < n; a++)
+        {
+            for (int b = a + 1; b < n; b++)
+            {
+                pairings[p++] = new int[]{a, b};
+            }
+        }
+        Standings standings = new Standings(n);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            pool.invoke(new Batch(pairings, games, 0, (long) pairings.length * games, seed, standings));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return standings;
+    }
+
+    // Plays one game between the strategies, the first one shooting first; the tally gets the result
+    private void play(int first, int second, long gameSeed, Tally tally)
+    {
+        StrategyPlayer[] players = new StrategyPlayer[2];
+        int[] index = {first, second};
+        for (int k = 0; k < 2; k++)
+        {
+            ShotStrategy.Provider provider = strategies.get(index[k]);
+            players[k] = new StrategyPlayer(rules, provider.getName(), provider.createFixed(rules), 0);
+        }
+        GameController controller = new GameController(players[0], players[1]);
+        controller.setRandom(new SplittableRandom(gameSeed));
+        controller.setupGame();
+        while (true)
+        {
+            String outcome = controller.takeTurn();
+            if (outcome.equals("gameOver"))
+            {
+                break;
+            }
+            if (outcome.equals("noMove"))
+            {
+                throw new IllegalStateException(strategies.get(index[controller.getCurrentPlayer() == players[0] ? 0 : 1]).getName()
+                        + " did not choose a shot");
+            }
+        }
+        int winner = controller.getCurrentPlayer() == players[0] ? 0 : 1;
+        long shots = controller.getOpponent().getBoard().countShots();
+        tally.wins[index[winner]][index[1 - winner]]++;
+        tally.winShots[index[winner]] += shots;
+        tally.winShotSquares[index[winner]] += shots * shots;
+        for (int k = 0; k < 2; k++)
+        {
+            tally.latency[index[k]].add(players[k].getStats());
+        }
+    }
+
+    // results of one leaf task, only touched by the thread running it
+    private static class Tally
+    {
+        final long[][] wins;          // [winner][loser]
+        final long[] winShots;
+        final long[] winShotSquares;
+        final LatencyStats[] latency;
+
+        Tally(int n)
+        {
+            wins = new long[n][n];
+            winShots = new long[n];
+            winShotSquares = new long[n];
+            latency = new LatencyStats[n];
+            for (int i = 0; i < n; i++)
+            {
+                latency[i] = new LatencyStats();
+            }
+        }
+    }
+
+    private class Batch extends RecursiveAction
+    {
+        private final int[][] pairings;
+        private final int games;
+        private final long from, to;   // game numbers over all pairings, pairing * games + game
+        private final long seed;
+        private final Standings standings;
+
+        Batch(int[][] pairings, int games, long from, long to, long seed, Standings standings)
+        {
+            this.pairings = pairings;
+            this.games = games;
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+            this.standings = standings;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GAMES_PER_TASK)
+            {
+                long middle = (from + to) >>> 1;
+                invokeAll(new Batch(pairings, games, from, middle, seed, standings),
+                        new Batch(pairings, games, middle, to, seed, standings));
+                return;
+            }
+            Tally tally = new Tally(strategies.size());
+            for (long g = from; g < to; g++)
+            {
+                int[] pairing = pairings[(int) (g / games)];
+                boolean swap = (g % games) % 2 == 1; // sides alternate who shoots first
+                play(swap ? pairing[1] : pairing[0], swap ? pairing[0] : pairing[1], SimulationRunner.gameSeed(seed, g), tally);
+            }
+            standings.add(tally);
+        }
+    }
+
+    // Totals of a run
+    public class Standings
+    {
+        private final Tally total;
+
+        Standings(int n)
+        {
+            total = new Tally(n);
+        }
+
+        private synchronized void add(Tally tally)
+        {
+            int n = total.wins.length;
+            for (int i = 0; i < n; i++)
+            {
+                for (int j = 0; j < n; j++)
+                {
+                    total.wins[i][j] += tally.wins[i][j];
+                }
+                total.winShots[i] += tally.winShots[i];
+                total.winShotSquares[i] += tally.winShotSquares[i];
+                total.latency[i].add(tally.latency[i]);
+            }
+        }
+
+        public List<ShotStrategy.Provider> getStrategies()
+        {
+            return strategies;
+        }
+        public synchronized long getWins(int winner, int loser)
+        {
+            return total.wins[winner][loser];
+        }
+        public synchronized long getWins(int strategy)
+        {
+            long wins = 0;
+            for (long w : total.wins[strategy])
+            {
+                wins += w;
+            }
+            return wins;
+        }
+        public synchronized long getGames(int strategy)
+        {
+            long games = 0;
+            for (int j = 0; j < total.wins.length; j++)
+            {
+                games += total.wins[strategy][j] + total.wins[j][strategy];
+            }
+            return games;
+        }
+        // shots to sink the whole opposing fleet, over the games the strategy won
+        public synchronized double getAverageShotsToWin(int strategy)
+        {
+            long wins = getWins(strategy);
+            return wins == 0 ? Double.NaN : (double) total.winShots[strategy] / wins;
+        }
+        // half width of the 95% confidence interval of getAverageShotsToWin (normal approximation)
+        public synchronized double getShotsToWinError(int strategy)
+        {
+            long wins = getWins(strategy);
+            if (wins < 2)
+            {
+                return Double.NaN;
+            }
+            double mean = (double) total.winShots[strategy] / wins;
+            double variance = (total.winShotSquares[strategy] - wins * mean * mean) / (wins - 1);
+            return 1.96 * Math.sqrt(Math.max(0, variance) / wins);
+        }
+        // time of one chooseShotCell call
+        public LatencyStats getLatency(int strategy)
+        {
+            return total.latency[strategy];
+        }
+
+        // Elo scale ratings, averaging BASE_RATING: the Bradley-Terry strengths that best explain all the results
+        // (minorization-maximization iterations), 400 * log10 of the strength ratio between two strategies
+        public synchronized double[] getRatings()
+        {
+            int n = total.wins.length;
+            double[] strength = new double[n];
+            java.util.Arrays.fill(strength, 1);
+            for (int iteration = 0; iteration < 1000; iteration++)
+            {
+                double[] next = new double[n];
+                double logSum = 0;
+                for (int i = 0; i < n; i++)
+                {
+                    double wins = 0;
+                    double denominator = 0;
+                    for (int j = 0; j < n; j++)
+                    {
+                        if (i == j)
+                        {
+                            continue;
+                        }
+                        double played = total.wins[i][j] + total.wins[j][i] + 2 * PRIOR_WINS;
+                        wins += total.wins[i][j] + PRIOR_WINS;
+                        denominator += played / (strength[i] + strength[j]);
+                    }
+                    next[i] = wins / denominator;
+                    logSum += Math.log(next[i]);
+                }
+                double scale = Math.exp(logSum / n); // geometric mean 1
+                double change = 0;
+                for (int i = 0; i < n; i++)
+                {
+                    next[i] /= scale;
+                    change = Math.max(change, Math.abs(next[i] - strength[i]));
+                }
+                strength = next;
+                if (change < 1e-9)
+                {
+                    break;
+                }
+            }
+            double[] ratings = new double[n];
+            for (int i = 0; i < n; i++)
+            {
+                ratings[i] = BASE_RATING + 400 * Math.log10(strength[i]);
+            }
+            return ratings;
+        }
+
+        public String toString()
+        {
+            StringBuilder out = new StringBuilder();
+            double[] ratings = getRatings();
+            Integer[] order = new Integer[ratings.length];
+            for (int i = 0; i < order.length; i++)
+            {
+                order[i] = i;
+            }
+            java.util.Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+            out.append(String.format("%-12s %7s %7s %6s %18s %12s %12s%n",
+                    "strategy", "rating", "games", "win%", "shots to win", "p50 ns", "p99 ns"));
+            for (int i : order)
+            {
+                LatencyStats latency = getLatency(i);
+                out.append(String.format("%-12s %7.0f %7d %5.1f%% %10.2f +-%5.2f %12d %12d%n",
+                        strategies.get(i).getName(), ratings[i], getGames(i),
+                        100.0 * getWins(i) / Math.max(1, getGames(i)),
+                        getAverageShotsToWin(i), getShotsToWinError(i),
+                        latency.getPercentileNanos(0.5), latency.getPercentileNanos(0.99)));
+            }
+            out.append(String.format("%nwins of the row strategy against the column strategy%n%-12s", ""));
+            for (int j : order)
+            {
+                out.append(String.format(" %10s", strategies.get(j).getName()));
+            }
+            out.append(String.format("%n"));
+            for (int i : order)
+            {
+                out.append(String.format("%-12s", strategies.get(i).getName()));
+                for (int j : order)
+                {
+                    long played = getWins(i, j) + getWins(j, i);
+                    out.append(i == j || played == 0 ? String.format(" %10s", "-")
+                            : String.format(" %9.1f%%", 100.0 * getWins(i, j) / played));
+                }
+                out.append(String.format("%n"));
+            }
+            return out.toString();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        List<ShotStrategy.Provider> strategies = new ArrayList<>();
+        for (int i = 3; i < args.length; i++)
+        {
+            ShotStrategy.Provider provider = StrategyRegistry.find(args[i]);
+            if (provider == null)
+            {
+                System.err.println("unknown strategy " + args[i] + ", registered: " + StrategyRegistry.list());
+                System.exit(1);
+            }
+            strategies.add(provider);
+        }
+        if (strategies.isEmpty())
+        {
+            strategies.addAll(StrategyRegistry.list());
+        }
+        Arena arena = new Arena(GameRules.STANDARD, strategies);
+        long start = System.nanoTime();
+        Standings standings = arena.run(games, threads, seed);
+        System.out.printf("%d games per pairing, %d strategies, %d threads, seed %d, %.1f s%n%n",
+                games, strategies.size(), threads, seed, (System.nanoTime() - start) / 1e9);
+        System.out.print(standings);
+    }
+}
@@ -0,0 +1,187 @@
+// Saves games without blocking the game thread. request() only captures the state (GameFile.capture: the game's
+// current GameSnapshot when it keeps a history, no copy at all, a fresh capture of the boards otherwise, or the
+// encoded file for sparse boards). The GameFile is built and written on a background thread,
+// into a temporary file next to the target that is fsynced and then renamed over it atomically, so the target
+// always holds a whole save, the old one or the new one, even if the game or the machine stops mid-write.
+// Requests arriving while one is still waiting are coalesced: only the newest state is written, and every
+// request's future completes with the write that covered it. Capture (game thread) and write (background)
+// durations are kept as LatencyStats.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class AutosaveService
+{
+    public static final String AUTOSAVE_FILE = "autosave.bsg"; // in the data directory
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "autosave-" + count.incrementAndGet());
+            thread.setDaemon(true); // never keeps the game from exiting, the rename keeps the file whole
+            return thread;
+        }
+    });
+
+    // a captured state waiting to be written, and the future of every request it stands for
+    private static final class Request
+    {
+        final Object state; // see GameFile.capture
+        final CompletableFuture<Path> done = new CompletableFuture<>();
+
+        Request(Object state)
+        {
+            this.state = state;
+        }
+    }
+
+    private final Path file;
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private volatile CompletableFuture<Path> last = CompletableFuture.completedFuture(null);
+    private final LatencyStats captureLatency = new LatencyStats();
+    private final LatencyStats saveLatency = new LatencyStats();
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public AutosaveService(Path file)
+    {
+        this.file = file;
+    }
+    // the autosave of the data directory
+    public static AutosaveService createDefault()
+    {
+        return new AutosaveService(DecisionCache.dataDir().toPath().resolve(AUTOSAVE_FILE));
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    // Captures the game's state and schedules writing it. Call from the thread that plays the game; returns
+    // at once with a future that completes when this state (or a newer one) is on disk.
+    public CompletableFuture<Path> request(GameController controller)
+    {
+        long start = System.nanoTime();
+        Request request = new Request(GameFile.capture(controller));
+        last = request.done;
+        Request previous = pending.getAndSet(request);
+        if (previous != null)
+        {
+            // not written yet, the new state replaces it
+            coalesced.incrementAndGet();
+            request.done.whenComplete((path, error) -> {
+                if (error != null)
+                {
+                    previous.done.completeExceptionally(error);
+                }
+                else
+                {
+                    previous.done.complete(path);
+                }
+            });
+        }
+        else
+        {
+            WRITER.execute(this::writePending);
+        }
+        captureLatency.record(System.nanoTime() - start);
+        return request.done;
+    }
+
+    // Waits up to the timeout for the last requested save, true if it is written
+    public boolean flush(long timeoutMillis)
+    {
+        try
+        {
+            last.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException | TimeoutException e)
+        {
+            return false;
+        }
+    }
+
+    private void writePending()
+    {
+        Request request = pending.getAndSet(null);
+        if (request == null)
+        {
+            return;
+        }
+        long start = System.nanoTime();
+        try
+        {
+            write(GameFile.encode(request.state));
+            saves.incrementAndGet();
+            saveLatency.record(System.nanoTime() - start);
+            request.done.complete(file);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            failures.incrementAndGet();
+            System.err.println("Autosave to " + file + " failed: " + e.getMessage());
+            request.done.completeExceptionally(e);
+        }
+    }
+    private void write(ByteBuffer bytes) throws IOException
+    {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = dir.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (bytes.hasRemaining())
+            {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        try
+        {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // time request() took on the game thread
+    public LatencyStats getCaptureLatency()
+    {
+        return captureLatency;
+    }
+    // time from starting to build the file to its rename, on the background thread
+    public LatencyStats getSaveLatency()
+    {
+        return saveLatency;
+    }
+    public long getSaves()
+    {
+        return saves.get();
+    }
+    // requests replaced by a newer one before they were written
+    public long getCoalesced()
+    {
+        return coalesced.get();
+    }
+    public long getFailures()
+    {
+        return failures.get();
+    }
+}
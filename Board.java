@@ -1,76 +1,314 @@
 // shipGrid tracks is there is a ship or it is empty
 // infoGrid tracks shot results if there is  a hit, miss, or destroyed ship
+// Both are stored as bit planes (ship, hit, miss, destroyed) in an Ocean: whole-board bitboards for normal
+// boards, lazily allocated 64x64 tiles for sparse ones. The char grids are only built when a caller asks for them.
 
 import java.io.Serializable;
 import java.util.Arrays;
 
 public class Board implements Serializable
 {
-    public static final int SIZE = 10;
-    private char[][] infoGrid; // ' ' empty, 'H' hit, 'M' miss, 'D' destroy
-    private char[][] shipGrid; // ' ' empty, 'S' ship 
-    public Board() 
+    public static final int SIZE = 10; // default board size, see GameRules.STANDARD
+    // results of fire()
+    public static final int MISS = 0;
+    public static final int HIT = 1;
+    public static final int SUNK = 2;
+    private final GameRules rules;
+    private final int rows;
+    private final int cols;
+
+    // bit planes and the ship id of every ship cell (100 cells of the standard board fit in a pair of longs)
+    private Ocean ocean;
+
+    // ship index: every ship cell knows the id of its ship (ids follow the order ships were placed,
+    // which is also the order of the player's ship list), and every ship keeps its hit count
+    private int shipCount = 0;
+    private int[] shipRow = new int[4];
+    private int[] shipCol = new int[4];
+    private int[] shipLength = new int[4];
+    private boolean[] shipHorizontal = new boolean[4];
+    private int[] shipHits = new int[4];
+    private FleetStatus fleet = new FleetStatus(); // updated with every placement and hit
+
+    // the char views are rebuilt lazily, only when the planes changed since the last call
+    private int infoVersion = 0;
+    private int shipVersion = 0;
+    private long infoHash = 0; // Zobrist hash of the info grid, kept up to date with every change
+    private transient char[][] infoView;
+    private transient int infoViewVersion = -1;
+    private transient char[][] shipView;
+    private transient int shipViewVersion = -1;
+
+    public Board()
     {
-        infoGrid = new char[SIZE][SIZE];
-        shipGrid = new char[SIZE][SIZE];
-        for (char[] row : infoGrid) // creates empty info grid
-        {
-            Arrays.fill(row, ' ');
-        }
-        for (char[] row : shipGrid) // creates empty ship grid
+        this(GameRules.STANDARD);
+    }
+    public Board(GameRules rules)
+    {
+        this.rules = rules;
+        rows = rules.getRows();
+        cols = rules.getCols();
+        ocean = rules.isSparse() ? new ChunkedOcean() : new DenseOcean(rows, cols);
+    }
+
+    public GameRules getRules()
+    {
+        return rules;
+    }
+    public int getRows()
+    {
+        return rows;
+    }
+    public int getCols()
+    {
+        return cols;
+    }
+    // Hash of the shot information (what the opponent sees): equal views of boards with the same size have
+    // equal hashes. XOR of one key per shot cell and its state, updated incrementally.
+    public long getInfoHash()
+    {
+        return infoHash;
+    }
+    // Key of a cell in a state ('M', 'H' or 'D', 0 for the others). Mixed from the cell instead of read
+    // from a random table, so it costs no memory on giant boards and is the same in every run.
+    static long zobrist(int r, int c, char state)
+    {
+        int s = state == 'M' ? 1 : state == 'H' ? 2 : state == 'D' ? 3 : 0;
+        if (s == 0)
         {
-            Arrays.fill(row, ' ');
+            return 0;
         }
+        long z = (((long) r << 32) ^ (c & 0xFFFFFFFFL)) * 4 + s;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    private void recomputeInfoHash()
+    {
+        infoHash = 0;
+        ocean.forEach(Ocean.MISS, (r, c) -> infoHash ^= zobrist(r, c, 'M'));
+        ocean.forEach(Ocean.HIT, (r, c) -> infoHash ^= zobrist(r, c, ocean.test(Ocean.DESTROYED, r, c) ? 'D' : 'H'));
+    }
+    // Changes with every new shot and every edit of the shot information. Players that follow the shots
+    // incrementally compare it to notice changes they were not told about (undo, loading a game).
+    public int getInfoVersion()
+    {
+        return infoVersion;
+    }
+    // cell storage, for engine classes that work on the planes directly
+    Ocean getOcean()
+    {
+        return ocean;
     }
+
+    // Snapshot of the shot results (' ', 'H', 'M', 'D'). Use setInfoGrid to change a cell, writes into the
+    // returned array are not seen by the board or other callers (each gets its own copy of the cached view).
+    // Not available on sparse boards.
     public char[][] getInfoGrid()
     {
-        return infoGrid;
+        if (infoView == null || infoViewVersion != infoVersion)
+        {
+            if (infoView == null)
+            {
+                infoView = new char[rows][cols];
+            }
+            for (char[] row : infoView)
+            {
+                Arrays.fill(row, ' ');
+            }
+            fillView(infoView, Ocean.MISS, 'M');
+            fillView(infoView, Ocean.HIT, 'H');
+            fillView(infoView, Ocean.DESTROYED, 'D');
+            infoViewVersion = infoVersion;
+        }
+        return copyOf(infoView);
     }
+    // Snapshot of the ships (' ', 'S'), a copy like getInfoGrid. Use setshipGrid to change a cell.
     public char[][] getShipGrid()
     {
-        return shipGrid;
+        if (shipView == null || shipViewVersion != shipVersion)
+        {
+            if (shipView == null)
+            {
+                shipView = new char[rows][cols];
+            }
+            for (char[] row : shipView)
+            {
+                Arrays.fill(row, ' ');
+            }
+            fillView(shipView, Ocean.SHIP, 'S');
+            shipViewVersion = shipVersion;
+        }
+        return copyOf(shipView);
     }
-    public char getInfoCoord(int r, int c) 
-    { 
-        return infoGrid[r][c]; 
+    private static char[][] copyOf(char[][] view)
+    {
+        char[][] copy = new char[view.length][];
+        for (int r = 0; r < view.length; r++)
+        {
+            copy[r] = view[r].clone();
+        }
+        return copy;
     }
-    public char getShipCoord(int r, int c) 
-    { 
-        return shipGrid[r][c]; 
+    // writes value into every cell whose bit is set, only visits the set bits
+    private void fillView(char[][] view, int plane, char value)
+    {
+        long[] bits = ocean.densePlane(plane);
+        if (bits == null)
+        {
+            throw new IllegalStateException("no char grid view for a sparse " + rows + "x" + cols + " board");
+        }
+        for (int w = 0; w < bits.length; w++)
+        {
+            long word = bits[w];
+            while (word != 0)
+            {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                view[i / cols][i % cols] = value;
+                word &= word - 1;
+            }
+        }
     }
-    public void setshipGrid(int r, int c, char value) 
-    { 
-        shipGrid[r][c] = value; 
+    public char getInfoCoord(int r, int c)
+    {
+        if (ocean.test(Ocean.DESTROYED, r, c))
+        {
+            return 'D';
+        }
+        if (ocean.test(Ocean.HIT, r, c))
+        {
+            return 'H';
+        }
+        if (ocean.test(Ocean.MISS, r, c))
+        {
+            return 'M';
+        }
+        return ' ';
+    }
+    public char getShipCoord(int r, int c)
+    {
+        return ocean.test(Ocean.SHIP, r, c) ? 'S' : ' ';
+    }
+    public void setshipGrid(int r, int c, char value)
+    {
+        if (value == 'S')
+        {
+            ocean.set(Ocean.SHIP, r, c);
+        }
+        else
+        {
+            ocean.clear(Ocean.SHIP, r, c);
+        }
+        shipVersion++;
+    }
+    public void setInfoGrid(int r, int c, char value)
+    {
+        infoHash ^= zobrist(r, c, getInfoCoord(r, c)) ^ zobrist(r, c, value);
+        ocean.clear(Ocean.HIT, r, c);
+        ocean.clear(Ocean.MISS, r, c);
+        ocean.clear(Ocean.DESTROYED, r, c);
+        if (value == 'H' || value == 'D')
+        {
+            ocean.set(Ocean.HIT, r, c);
+        }
+        if (value == 'D')
+        {
+            ocean.set(Ocean.DESTROYED, r, c);
+        }
+        if (value == 'M')
+        {
+            ocean.set(Ocean.MISS, r, c);
+        }
+        infoVersion++;
+    }
+    // packed cell index used by the primitive shot API, a long so that every cell of a sparse board has one
+    public long cellIndex(int r, int c)
+    {
+        return (long) r * cols + c;
+    }
+    public char getInfoCell(long cell)
+    {
+        return getInfoCoord((int) (cell / cols), (int) (cell % cols));
+    }
+    public boolean isShotCell(long cell)
+    {
+        return isShot((int) (cell / cols), (int) (cell % cols));
+    }
+    public boolean hasShip(int r, int c)
+    {
+        return ocean.test(Ocean.SHIP, r, c);
+    }
+    // true if the cell was already shot at (hit, miss or destroyed)
+    public boolean isShot(int r, int c)
+    {
+        return ocean.test(Ocean.HIT, r, c) || ocean.test(Ocean.MISS, r, c);
+    }
+    // visits the hit cells of ships that are not sunk yet, without looking at the rest of the board
+    public void forEachOpenHit(Ocean.CellVisitor visitor)
+    {
+        ocean.forEach(Ocean.HIT, (r, c) -> {
+            if (!ocean.test(Ocean.DESTROYED, r, c))
+            {
+                visitor.visit(r, c);
+            }
+        });
+    }
+    // visits every cell shot at (hit, miss or destroyed), costs the shots, not the area
+    public void forEachShot(Ocean.CellVisitor visitor)
+    {
+        ocean.forEach(Ocean.HIT, visitor);
+        ocean.forEach(Ocean.MISS, visitor);
+    }
+    public int countShipCells()
+    {
+        return ocean.count(Ocean.SHIP);
+    }
+    // hit cells including destroyed ones
+    public int countHits()
+    {
+        return ocean.count(Ocean.HIT);
+    }
+    public int countMisses()
+    {
+        return ocean.count(Ocean.MISS);
+    }
+    public int countDestroyed()
+    {
+        return ocean.count(Ocean.DESTROYED);
     }
-    public void setInfoGrid(int r, int c, char value) 
-    { 
-        infoGrid[r][c] = value; 
+    public int countShots()
+    {
+        return countHits() + countMisses();
     }
-    public boolean inBounds(int r, int c) 
+    public boolean inBounds(int r, int c)
     {
-        return r >= 0 && r < SIZE && c >= 0 && c < SIZE;
+        return r >= 0 && r < rows && c >= 0 && c < cols;
     }
     public boolean canPlaceShip(int r, int c, int length, boolean horizontal) // returns true if it is valid to place a ship
     {
         //check boundaries
+        if (r < 0 || c < 0)
+        {
+            return false;
+        }
         if (horizontal) {
-            if (c + length > SIZE) 
+            if (c + length > cols || r >= rows)
             {
                 return false;
             }
-        } 
+        }
         else {
-            if (r + length > SIZE) 
+            if (r + length > rows || c >= cols)
             {
                 return false;
             }
         }
         //check if cell is empty
-        for (int i = 0; i < length; i++) {
+        for (int i = 0; i < length; i++)
+        {
             int checkRow = horizontal ? r : r + i;
             int checkCol = horizontal ? c + i : c;
-            
-            if (shipGrid[checkRow][checkCol] != ' ') 
+            if (ocean.test(Ocean.SHIP, checkRow, checkCol))
             {
                 return false;
             }
@@ -82,68 +320,249 @@ public class Board implements Serializable
     {
         if (canPlaceShip(r,c, length, horizontal))
         {
-            for (int i = 0; i < length; i++) 
+            addShip(r, c, length, horizontal);
+        }
+    }
+    // registers the ship in the ship index and sets its cells, no validity check
+    private int addShip(int r, int c, int length, boolean horizontal)
+    {
+        if (shipCount == shipLength.length)
+        {
+            int capacity = shipCount * 2;
+            shipRow = Arrays.copyOf(shipRow, capacity);
+            shipCol = Arrays.copyOf(shipCol, capacity);
+            shipLength = Arrays.copyOf(shipLength, capacity);
+            shipHorizontal = Arrays.copyOf(shipHorizontal, capacity);
+            shipHits = Arrays.copyOf(shipHits, capacity);
+        }
+        int id = shipCount++;
+        shipRow[id] = r;
+        shipCol[id] = c;
+        shipLength[id] = length;
+        shipHorizontal[id] = horizontal;
+        shipHits[id] = 0;
+        fleet.shipPlaced(length);
+        for (int i = 0; i < length; i++)
+        {
+            int cellRow = horizontal ? r : r + i;
+            int cellCol = horizontal ? c + i : c;
+            ocean.set(Ocean.SHIP, cellRow, cellCol);   // updates ship plane to conatian information of where ships are
+            ocean.setShipId(cellRow, cellCol, id);
+        }
+        shipVersion++;
+        return id;
+    }
+
+    // ships placed on this board, in id order
+    int getShipCount()
+    {
+        return shipCount;
+    }
+    int getShipRow(int id)
+    {
+        return shipRow[id];
+    }
+    int getShipCol(int id)
+    {
+        return shipCol[id];
+    }
+    int getShipLength(int id)
+    {
+        return shipLength[id];
+    }
+    boolean isShipHorizontal(int id)
+    {
+        return shipHorizontal[id];
+    }
+
+    // A board in the same state that shares nothing with this one, for readers on another thread (see StrategyPlayer).
+    // Costs the planes on dense boards, the shots on sparse ones.
+    public Board copy()
+    {
+        Board copy = new Board(rules);
+        java.util.List<Ship> ships = new java.util.ArrayList<>(shipCount);
+        for (int id = 0; id < shipCount; id++)
+        {
+            ships.add(new Ship(shipLength[id], shipRow[id], shipCol[id], shipHorizontal[id]));
+        }
+        if (ocean.densePlane(Ocean.HIT) != null)
+        {
+            copy.restoreShots(ocean.densePlane(Ocean.HIT), ocean.densePlane(Ocean.MISS), ocean.densePlane(Ocean.DESTROYED), ships);
+        }
+        else
+        {
+            forEachShot((r, c) -> copy.setInfoGrid(r, c, getInfoCoord(r, c)));
+            copy.restoreShips(ships);
+        }
+        return copy;
+    }
+
+    // Replaces the shot planes of a dense board (restoring a snapshot) and rebuilds the ship index from the list
+    void restoreShots(long[] hit, long[] miss, long[] destroyed, java.util.List<Ship> ships)
+    {
+        System.arraycopy(hit, 0, ocean.densePlane(Ocean.HIT), 0, hit.length);
+        System.arraycopy(miss, 0, ocean.densePlane(Ocean.MISS), 0, miss.length);
+        System.arraycopy(destroyed, 0, ocean.densePlane(Ocean.DESTROYED), 0, destroyed.length);
+        infoVersion++;
+        recomputeInfoHash();
+        restoreShips(ships);
+    }
+
+    // Rebuilds the ship index from a ship list, used after the grids were set cell by cell (loading a game).
+    // Hit counts are taken from the hit plane.
+    public void restoreShips(java.util.List<Ship> ships)
+    {
+        ocean.clearShips();
+        shipCount = 0;
+        fleet.clear();
+        for (Ship s : ships)
+        {
+            int id = addShip(s.getStartRow(), s.getStartCol(), s.getLength(), s.isHorizontal());
+            s.setHits(0);
+            for (int i = 0; i < s.getLength(); i++)
             {
-                shipGrid[r][c] = 'S';   // updates shipGrid to conatian information of where ships are
-                if (horizontal)
-                {
-                    c++;
-                }
-                else
+                int cellRow = s.isHorizontal() ? s.getStartRow() : s.getStartRow() + i;
+                int cellCol = s.isHorizontal() ? s.getStartCol() + i : s.getStartCol();
+                if (ocean.test(Ocean.HIT, cellRow, cellCol))
                 {
-                    r++;
+                    shipHits[id]++;
+                    fleet.cellHit();
+                    s.hit(cellRow, cellCol);
                 }
             }
+            if (shipHits[id] == s.getLength())
+            {
+                fleet.shipSunk(s.getLength());
+            }
         }
     }
 
     // Record a shot: returns true if hit
-    public boolean shoot(int r, int c, java.util.List<Ship> ships) 
+    public boolean shoot(int r, int c, java.util.List<Ship> ships)
     {
-        if (shipGrid[r][c] == 'S') // if there is a ship at the location, it is marked as hit
-        { 
-            infoGrid[r][c] = 'H'; 
-            for (Ship s : ships) // If all locations of a ship are hit, it is set to destroyed
+        return fire(r, c, ships) != MISS;
+    }
+    // Record a shot on a packed cell (row * cols + col), returns MISS, HIT or SUNK
+    public int shootCell(long cell, java.util.List<Ship> ships)
+    {
+        return fire((int) (cell / cols), (int) (cell % cols), ships);
+    }
+    // Record a shot: returns MISS, HIT or SUNK
+    // The ship is found through the cell index, so a shot costs the same whatever the fleet size.
+    // Shooting a cell twice does not change anything (it returns HIT or MISS again).
+    public int fire(int r, int c, java.util.List<Ship> ships)
+    {
+        if (ocean.test(Ocean.HIT, r, c))
+        {
+            return HIT;
+        }
+        if (ocean.test(Ocean.MISS, r, c))
+        {
+            return MISS;
+        }
+        infoVersion++;
+        if (!ocean.test(Ocean.SHIP, r, c))
+        {
+            ocean.set(Ocean.MISS, r, c); //miss if grid empty
+            infoHash ^= zobrist(r, c, 'M');
+            return MISS;
+        }
+        ocean.set(Ocean.HIT, r, c); // if there is a ship at the location, it is marked as hit
+        infoHash ^= zobrist(r, c, 'H');
+        int id = ocean.getShipId(r, c);
+        Ship s = findShip(id, r, c, ships);
+        if (s != null)
+        {
+            s.hit(r, c);
+        }
+        boolean sunk;
+        if (id >= 0)
+        {
+            shipHits[id]++;
+            fleet.cellHit();
+            sunk = shipHits[id] == shipLength[id];
+            if (sunk)
             {
-              if (s.occupies(r, c))
-              {
-                s.hit();
-                if (s.isSunk()) 
-                {
-                    int sRow = s.getStartRow();
-                    int sCol = s.getStartCol();
-                    for(int i =0; i< s.getLength(); i++)
-                    {
-                        infoGrid[sRow][sCol]='D';
-                        if (s.isHorizontal())
-                        {
-                            sCol++;
-                        }
-                        else
-                        {
-                            sRow++;
-                        } 
-
-                    }
-                }
-                break;
-              }
+                fleet.shipSunk(shipLength[id]);
+            }
         }
-            return true; 
-        } else{ 
-            infoGrid[r][c] = 'M'; //miss if grid empty
-            return false;
+        else
+        {
+            sunk = s != null && s.isSunk(); // cell was set directly, only the ship object knows
+        }
+        if (sunk) // If all locations of a ship are hit, it is set to destroyed
+        {
+            int sRow = id >= 0 ? shipRow[id] : s.getStartRow();
+            int sCol = id >= 0 ? shipCol[id] : s.getStartCol();
+            boolean horizontal = id >= 0 ? shipHorizontal[id] : s.isHorizontal();
+            int length = id >= 0 ? shipLength[id] : s.getLength();
+            for (int i = 0; i < length; i++)
+            {
+                int cellRow = horizontal ? sRow : sRow + i;
+                int cellCol = horizontal ? sCol + i : sCol;
+                ocean.set(Ocean.DESTROYED, cellRow, cellCol);
+                infoHash ^= zobrist(cellRow, cellCol, 'H') ^ zobrist(cellRow, cellCol, 'D');
+            }
+            return SUNK;
         }
+        return HIT;
+    }
+    // ship object on (r, c): the id is the list index, the list is only scanned if it does not match
+    private Ship findShip(int id, int r, int c, java.util.List<Ship> ships)
+    {
+        if (ships == null)
+        {
+            return null;
+        }
+        if (id >= 0 && id < ships.size() && ships.get(id).occupies(r, c))
+        {
+            return ships.get(id);
+        }
+        for (Ship s : ships)
+        {
+            if (s.occupies(r, c))
+            {
+                return s;
+            }
+        }
+        return null;
     }
 
     //shows hit, miss, destroy for opponent
-    public char getForOpponent(int r, int c) 
+    public char getForOpponent(int r, int c)
     {
-        return infoGrid[r][c];
+        return getInfoCoord(r, c);
     }
 
+    public FleetStatus getFleetStatus()
+    {
+        return fleet;
+    }
+    // Sets the fleet counters of a board that has shot results but no ships (a view rebuilt from a char grid):
+    // the whole fleet of the rules placed, the given lengths sunk and one cell hit per 'H' or 'D' cell
+    void restoreFleetStatus(int[] sunkLengths)
+    {
+        fleet.clear();
+        for (int length : rules.getFleet().getLengths())
+        {
+            fleet.shipPlaced(length);
+        }
+        for (int length : sunkLengths)
+        {
+            fleet.shipSunk(length);
+        }
+        for (int hits = countHits(); hits > 0; hits--)
+        {
+            fleet.cellHit();
+        }
+    }
+    // Check if every ship placed on this board is sunk, reads the fleet counter
+    public boolean allShipsSunk()
+    {
+        return fleet.allSunk();
+    }
     // Check if all ships in a list are sunk
-    public boolean allShipsSunk(java.util.List<Ship> ships) 
+    public boolean allShipsSunk(java.util.List<Ship> ships)
     {
         for (Ship s : ships)
         {
@@ -154,17 +573,15 @@ public class Board implements Serializable
         }
         return true;
     }
-    
+
     // Reset board
-    public void reset() 
+    public void reset()
     {
-        for (char[] row : infoGrid) 
-        {
-            Arrays.fill(row, ' ');
-        }
-        for (char[] row : shipGrid) 
-        {
-            Arrays.fill(row, ' ');
-        }
+        ocean.clearAll();
+        shipCount = 0;
+        fleet.clear();
+        infoVersion++;
+        infoHash = 0;
+        shipVersion++;
     }
 }
@@ -1,4 +1,4 @@
-//This panel contains gamebuttons Home, Save Game,  and New Game in the game screen
+//This panel contains gamebuttons Home, Save Game, Undo (if given) and New Game in the game screen
 
 import javax.swing.*;
 import java.awt.*;
@@ -6,9 +6,12 @@ import java.awt.event.ActionListener;
 
 public class ButtonPanel extends JPanel 
 {
-    public JButton homeButton, newGameButton, saveButton, loadButton;
+    public JButton homeButton, newGameButton, saveButton, loadButton, undoButton;
     private final Color BUTTON_COLOR = new Color(66, 135, 245);
     public ButtonPanel(ActionListener homeAction, ActionListener newGameAction, ActionListener saveAction) {
+        this(homeAction, newGameAction, saveAction, null);
+    }
+    public ButtonPanel(ActionListener homeAction, ActionListener newGameAction, ActionListener saveAction, ActionListener undoAction) {
         setLayout(new FlowLayout(FlowLayout.CENTER, 20, 10));
         setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
         homeButton = createButton("Home", homeAction);
@@ -16,6 +19,10 @@ public class ButtonPanel extends JPanel
         newGameButton = createButton("New Game", newGameAction);
         add(homeButton);
         add(saveButton);
+        if (undoAction != null) {
+            undoButton = createButton("Undo", undoAction);
+            add(undoButton);
+        }
         add(newGameButton);
     }
     private JButton createButton(String text, ActionListener action) {
@@ -0,0 +1,138 @@
+// Sparse storage for very large boards (the "giant ocean" mode, e.g. 100,000 x 100,000).
+// The board is cut into 64x64 tiles that are only allocated when a cell in them is set, and inside a tile
+// a plane is only allocated once it has a bit set. Tiles are found through a primitive long-keyed map and
+// ship ids are kept per ship cell, so memory grows with shots fired and ships placed, not with the area.
+
+import java.util.ArrayList;
+
+class ChunkedOcean extends Ocean
+{
+    private static final int TILE_SHIFT = 6; // 64x64 cells per tile, one long per tile row
+
+    private LongIntMap tileIndex = new LongIntMap();    // tile key -> index in tiles
+    private ArrayList<long[][]> tiles = new ArrayList<>(); // [plane][row in tile], planes allocated lazily
+    private long[] tileKeys = new long[16];             // key of every tile, same order as tiles
+    private LongIntMap shipIds = new LongIntMap();      // (r, c) key -> ship id
+    private final int[] counts = new int[PLANES];
+
+    private static long key(int r, int c)
+    {
+        return ((long) r << 32) | (c & 0xFFFFFFFFL);
+    }
+    private long[] row(int plane, int r, int c, boolean create)
+    {
+        long tileKey = key(r >>> TILE_SHIFT, c >>> TILE_SHIFT);
+        int index = tileIndex.get(tileKey, -1);
+        if (index < 0)
+        {
+            if (!create)
+            {
+                return null;
+            }
+            index = tiles.size();
+            tiles.add(new long[PLANES][]);
+            tileIndex.put(tileKey, index);
+            if (index == tileKeys.length)
+            {
+                tileKeys = java.util.Arrays.copyOf(tileKeys, index * 2);
+            }
+            tileKeys[index] = tileKey;
+        }
+        long[][] tile = tiles.get(index);
+        if (tile[plane] == null)
+        {
+            if (!create)
+            {
+                return null;
+            }
+            tile[plane] = new long[1 << TILE_SHIFT];
+        }
+        return tile[plane];
+    }
+
+    boolean test(int plane, int r, int c)
+    {
+        long[] bits = row(plane, r, c, false);
+        return bits != null && (bits[r & 63] & (1L << c)) != 0;
+    }
+    void set(int plane, int r, int c)
+    {
+        long[] bits = row(plane, r, c, true);
+        long bit = 1L << c;
+        if ((bits[r & 63] & bit) == 0)
+        {
+            bits[r & 63] |= bit;
+            counts[plane]++;
+        }
+    }
+    void clear(int plane, int r, int c)
+    {
+        long[] bits = row(plane, r, c, false);
+        long bit = 1L << c;
+        if (bits != null && (bits[r & 63] & bit) != 0)
+        {
+            bits[r & 63] &= ~bit;
+            counts[plane]--;
+        }
+    }
+    int count(int plane)
+    {
+        return counts[plane];
+    }
+    int getShipId(int r, int c)
+    {
+        return shipIds.get(key(r, c), -1);
+    }
+    void setShipId(int r, int c, int id)
+    {
+        shipIds.put(key(r, c), id);
+    }
+    void clearShips()
+    {
+        for (long[][] tile : tiles)
+        {
+            tile[SHIP] = null;
+        }
+        counts[SHIP] = 0;
+        shipIds = new LongIntMap();
+    }
+    void clearAll()
+    {
+        tileIndex = new LongIntMap();
+        tiles = new ArrayList<>();
+        shipIds = new LongIntMap();
+        for (int p = 0; p < PLANES; p++)
+        {
+            counts[p] = 0;
+        }
+    }
+    long[] densePlane(int plane)
+    {
+        return null;
+    }
+    void forEach(int plane, CellVisitor visitor)
+    {
+        for (int i = 0; i < tiles.size(); i++)
+        {
+            long[] bits = tiles.get(i)[plane];
+            if (bits == null)
+            {
+                continue;
+            }
+            int tileRow = (int) (tileKeys[i] >> 32) << TILE_SHIFT;
+            int tileCol = (int) tileKeys[i] << TILE_SHIFT;
+            for (int r = 0; r < bits.length; r++)
+            {
+                for (long word = bits[r]; word != 0; word &= word - 1)
+                {
+                    visitor.visit(tileRow + r, tileCol + Long.numberOfTrailingZeros(word));
+                }
+            }
+        }
+    }
+    // number of allocated tiles, for memory accounting
+    int getTileCount()
+    {
+        return tiles.size();
+    }
+}
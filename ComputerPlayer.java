@@ -1,103 +1,319 @@
 // computer player that makes strategic shots by targeting adjacent cells to hits,
-// detecting ship direction from consecutive hits, and pursuing along that direction
+// detecting ship direction from consecutive hits, and pursuing along that direction.
+// The hits to chase are kept in a target stack fed by the shot results, so a decision costs the number
+// of open hits instead of a scan of the whole board. Hits leave the stack when their ship sinks.
 
-import java.util.*;
-
-public class ComputerPlayer extends Player 
+public class ComputerPlayer extends Player implements ShotStrategy
 {
-    private Random rand = new Random();
+    public ComputerPlayer()
+    {
+    }
+    public ComputerPlayer(GameRules rules)
+    {
+        super(rules);
+    }
 
-    public int[] chooseShot(char [][] opponentBoard)
+    // reused by findAdjacentToHit so choosing a shot allocates nothing
+    private final long[] candidates = new long[4];
+
+    // target tracker: opponent board followed, hits on ships not sunk yet (most recent last), cells not shot yet
+    private transient Board tracked;
+    private transient int trackedVersion;
+    private transient long[] openHits;
+    private transient int openHitCount;
+    private transient long unknownCells;
+    private transient DecisionCache cache; // decisions already taken for the same view, off by default
+    private transient EndgameSolver endgame; // exact search for the last ships, off by default
+    private transient ShotHeatmap heatmap;  // where opponents shoot first, fleet placed away from it; off by default
+    private transient int[] received;       // opponent shots at our board this game, in order
+    private transient int receivedCount;
+    private transient boolean gameCounted;  // the finished game went into the heatmap and the prior already
+    private transient PlacementPrior prior; // the opponent's placement habits, seeds the hunt; off by default
+
+    // Decisions are looked up in the cache first (if there is one), a cached cell that was shot since
+    // (hash collision) is ignored. The cache holds int cells, so sparse boards are not cached.
+    public long chooseShotCell(Board opponentBoard)
     {
+        if (cache == null || opponentBoard.getRules().isSparse()) {
+            return think(opponentBoard);
+        }
+        // a learned prior changes the hunt, so those decisions are kept apart (and the opening book does not apply)
+        long variant = prior != null && prior.getGames() > 0 ? prior.getProfile().hashCode() * 31L + prior.getGames() : 0;
+        long key = DecisionCache.key(opponentBoard, getClass(), variant);
+        int cached = cache.get(key);
+        if (cached != NO_SHOT && cached < opponentBoard.getRules().getCells() && !opponentBoard.isShotCell(cached)) {
+            return cached;
+        }
+        long cell = think(opponentBoard);
+        if (cell != NO_SHOT) {
+            cache.put(key, (int) cell);
+        }
+        return cell;
+    }
+    // exact answer once few ships are left, the strategy otherwise (or if the solver runs out of time)
+    private long think(Board opponentBoard) {
+        if (endgame != null && endgame.applies(opponentBoard)) {
+            int cell = endgame.solve(opponentBoard);
+            if (cell != NO_SHOT) {
+                return cell;
+            }
+        }
+        return decide(opponentBoard);
+    }
+    // searches the last ships exactly with the solver, null (the default) turns it off
+    public void setEndgameSolver(EndgameSolver endgame) {
+        this.endgame = endgame;
+    }
+    // learns from the opponent's shots and places the fleet by it, null places uniformly
+    public void setShotHeatmap(ShotHeatmap heatmap) {
+        this.heatmap = heatmap;
+    }
+    public ShotHeatmap getShotHeatmap() {
+        return heatmap;
+    }
+    @Override
+    public void placeShipsAutomatically() {
+        receivedCount = 0;
+        gameCounted = false;
+        if (heatmap == null) {
+            super.placeShipsAutomatically();
+            return;
+        }
+        heatmap.placeFleet(board, ships, getRandom());
+    }
+    @Override
+    public void onShotReceived(long cell, int result) {
+        if (heatmap == null) {
+            return;
+        }
+        if (received == null || receivedCount == received.length) {
+            received = java.util.Arrays.copyOf(received == null ? new int[0] : received, Math.max(16, receivedCount * 2));
+        }
+        received[receivedCount++] = (int) cell; // the heatmap is only kept for dense boards
+    }
+    @Override
+    public void onGameOver(Player opponent, boolean won) {
+        if (gameCounted) {
+            return; // ended again after an undo
+        }
+        gameCounted = true;
+        if (heatmap != null && receivedCount > 0) {
+            heatmap.addGame(received, receivedCount);
+        }
+        if (prior != null) {
+            prior.addGame(opponent.getShips());
+        }
+    }
+    // learns where this opponent puts its ships and hunts there first, null hunts without it
+    public void setPlacementPrior(PlacementPrior prior) {
+        this.prior = prior;
+    }
+    public PlacementPrior getPlacementPrior() {
+        return prior;
+    }
+    // per cell factor for the hunt scores from the opponent's habits, null if there is no prior for the board
+    protected double[] huntWeights(Board opponentBoard) {
+        if (prior == null || opponentBoard.getRules().isSparse()) {
+            return null;
+        }
+        double[] weights = prior.getLikelihoodRatios();
+        return weights.length == opponentBoard.getRules().getCells() ? weights : null;
+    }
+    public void setDecisionCache(DecisionCache cache) {
+        this.cache = cache;
+    }
+    public DecisionCache getDecisionCache() {
+        return cache;
+    }
+
+    // the decision itself, subclasses replace it with their strategy
+    protected long decide(Board opponentBoard)
+    {
+        if (opponentBoard != tracked || opponentBoard.getInfoVersion() != trackedVersion) {
+            trackTargets(opponentBoard); // first shot, or the board changed behind our back (undo, load)
+        }
         // First priority: Look for a line of 2+ hits to detect direction
-        int[] directedShot = findDirectedShot(opponentBoard);
-        if (directedShot != null) {
+        long directedShot = findDirectedShot(opponentBoard);
+        if (directedShot != NO_SHOT) {
             return directedShot;
         }
         // Second priority: Look for a single hit and shoot adjacent
-        int[] adjacentShot = findAdjacentToHit(opponentBoard);
-        if (adjacentShot != null) {
+        long adjacentShot = findAdjacentToHit(opponentBoard);
+        if (adjacentShot != NO_SHOT) {
             return adjacentShot;
         }
         //pick random cell
+        if (unknownCells == 0) {
+            return NO_SHOT;
+        }
+        double[] weights = huntWeights(opponentBoard);
+        if (weights != null) {
+            return weightedRandomCell(opponentBoard, weights);
+        }
+        int rows = opponentBoard.getRows();
+        int cols = opponentBoard.getCols();
         int row, col;
         do {
-            row = rand.nextInt(Board.SIZE);
-            col = rand.nextInt(Board.SIZE);
-        } while (opponentBoard[row][col] != ' ');
-        return new int[]{row, col};
+            row = getRandom().nextInt(rows);
+            col = getRandom().nextInt(cols);
+        } while (opponentBoard.isShot(row, col));
+        return opponentBoard.cellIndex(row, col);
     }
-    
+
+    // a cell not shot yet, drawn with probability proportional to its weight
+    private int weightedRandomCell(Board board, double[] weights) {
+        double total = 0;
+        for (int cell = 0; cell < weights.length; cell++) {
+            if (!board.isShotCell(cell)) {
+                total += weights[cell];
+            }
+        }
+        double x = getRandom().nextDouble() * total;
+        int last = NO_SHOT;
+        for (int cell = 0; cell < weights.length; cell++) {
+            if (!board.isShotCell(cell)) {
+                last = cell;
+                x -= weights[cell];
+                if (x < 0) {
+                    return cell;
+                }
+            }
+        }
+        return last; // rounding
+    }
+
+    @Override
+    public void onShotResult(Board opponentBoard, long cell, int result) {
+        if (opponentBoard != tracked || opponentBoard.getInfoVersion() == trackedVersion) {
+            return; // not following this board, or the cell was shot before
+        }
+        if (opponentBoard.getInfoVersion() != trackedVersion + 1) {
+            tracked = null; // missed a change, read again on the next decision
+            return;
+        }
+        trackedVersion = opponentBoard.getInfoVersion();
+        unknownCells--;
+        if (result == Board.HIT) {
+            pushOpenHit(cell);
+        } else if (result == Board.SUNK) {
+            // the sunk ship's hits are done with
+            int kept = 0;
+            for (int h = 0; h < openHitCount; h++) {
+                if (opponentBoard.getInfoCell(openHits[h]) != 'D') {
+                    openHits[kept++] = openHits[h];
+                }
+            }
+            openHitCount = kept;
+        }
+    }
+
+    // reads the open hits from the board, only visits the hit cells
+    private void trackTargets(Board board) {
+        tracked = board;
+        trackedVersion = board.getInfoVersion();
+        if (openHits == null) {
+            openHits = new long[16];
+        }
+        openHitCount = 0;
+        board.forEachOpenHit((r, c) -> pushOpenHit(board.cellIndex(r, c)));
+        unknownCells = board.getRules().getCells() - board.countShots();
+    }
+    private void pushOpenHit(long cell) {
+        if (openHitCount == openHits.length) {
+            openHits = java.util.Arrays.copyOf(openHits, openHitCount * 2);
+        }
+        openHits[openHitCount++] = cell;
+    }
+
+    // hit but not yet destroyed
+    private static boolean isOpenHit(Board board, int r, int c) {
+        return board.getInfoCoord(r, c) == 'H';
+    }
+    private static boolean isUnknown(Board board, int r, int c) {
+        return !board.isShot(r, c);
+    }
+
     //if detect 2+ hits => detect direction and make guesses
-    private int[] findDirectedShot(char[][] board) {
+    //only lines through the open hits are followed, horizontal lines first
+    private long findDirectedShot(Board board) {
+        int rows = board.getRows();
+        int cols = board.getCols();
         //horizontal direction for ship
-        for (int r = 0; r < 10; r++) {
-            for (int c = 0; c < 9; c++) {
-                if (board[r][c] == 'H' && board[r][c + 1] == 'H') {
-                    // Try shooting to the right
-                    int endCol = c + 1;
-                    while (endCol < 9 && board[r][endCol + 1] == 'H') {
-                        endCol++;
-                    }
-                    if (endCol + 1 < 10 && board[r][endCol + 1] == ' ') {
-                        return new int[]{r, endCol + 1};
-                    }
-                    // Try shooting to the left
-                    if (c - 1 >= 0 && board[r][c - 1] == ' ') {
-                        return new int[]{r, c - 1};
-                    }
+        for (int h = 0; h < openHitCount; h++) {
+            int r = (int) (openHits[h] / cols);
+            int c = (int) (openHits[h] % cols);
+            if ((c + 1 < cols && isOpenHit(board, r, c + 1)) || (c - 1 >= 0 && isOpenHit(board, r, c - 1))) {
+                // Try shooting to the right
+                int endCol = c;
+                while (endCol < cols - 1 && isOpenHit(board, r, endCol + 1)) {
+                    endCol++;
+                }
+                if (endCol + 1 < cols && isUnknown(board, r, endCol + 1)) {
+                    return board.cellIndex(r, endCol + 1);
+                }
+                // Try shooting to the left
+                int startCol = c;
+                while (startCol > 0 && isOpenHit(board, r, startCol - 1)) {
+                    startCol--;
+                }
+                if (startCol - 1 >= 0 && isUnknown(board, r, startCol - 1)) {
+                    return board.cellIndex(r, startCol - 1);
                 }
             }
         }
         // Look for vertical lines of hits
-        for (int r = 0; r < 9; r++) {
-            for (int c = 0; c < 10; c++) {
-                if (board[r][c] == 'H' && board[r + 1][c] == 'H') {
-                    // Try shooting below
-                    int endRow = r + 1;
-                    while (endRow < 9 && board[endRow + 1][c] == 'H') {
-                        endRow++; 
-                    }
-                    if (endRow + 1 < 10 && board[endRow + 1][c] == ' ') {
-                        return new int[]{endRow + 1, c};
-                    }
-                    // Try shooting upward
-                    if (r - 1 >= 0 && board[r - 1][c] == ' ') {
-                        return new int[]{r - 1, c};
-                    }
+        for (int h = 0; h < openHitCount; h++) {
+            int r = (int) (openHits[h] / cols);
+            int c = (int) (openHits[h] % cols);
+            if ((r + 1 < rows && isOpenHit(board, r + 1, c)) || (r - 1 >= 0 && isOpenHit(board, r - 1, c))) {
+                // Try shooting below
+                int endRow = r;
+                while (endRow < rows - 1 && isOpenHit(board, endRow + 1, c)) {
+                    endRow++;
+                }
+                if (endRow + 1 < rows && isUnknown(board, endRow + 1, c)) {
+                    return board.cellIndex(endRow + 1, c);
+                }
+                // Try shooting upward
+                int startRow = r;
+                while (startRow > 0 && isOpenHit(board, startRow - 1, c)) {
+                    startRow--;
+                }
+                if (startRow - 1 >= 0 && isUnknown(board, startRow - 1, c)) {
+                    return board.cellIndex(startRow - 1, c);
                 }
             }
         }
-        
-        return null;
+
+        return NO_SHOT;
     }
-    
+
     //choose adjacent cell to make a guess
     //find valdi adjacent cell through all directions and pick a random valid
-    private int[] findAdjacentToHit(char[][] board) {
-        for (int r = 0; r < 10; r++) {
-            for (int c = 0; c < 10; c++) {
-                if (board[r][c] == 'H') {
-                    List<int[]> validMoves = new ArrayList<>();
-                    if (r + 1 < 10 && board[r + 1][c] == ' ') {
-                        validMoves.add(new int[]{r + 1, c});
-                    }
-                    if (r - 1 >= 0 && board[r - 1][c] == ' ') {
-                        validMoves.add(new int[]{r - 1, c});
-                    }
-                    if (c + 1 < 10 && board[r][c + 1] == ' ') {
-                        validMoves.add(new int[]{r, c + 1});
-                    }
-                    if (c - 1 >= 0 && board[r][c - 1] == ' ') {
-                        validMoves.add(new int[]{r, c - 1});
-                    }
-                    if (!validMoves.isEmpty()) {
-                        int randomIndex = rand.nextInt(validMoves.size());
-                        return validMoves.get(randomIndex);
-                    }
-                }
+    //the most recent hit is tried first (top of the target stack)
+    private long findAdjacentToHit(Board board) {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        for (int h = openHitCount - 1; h >= 0; h--) {
+            int r = (int) (openHits[h] / cols);
+            int c = (int) (openHits[h] % cols);
+            int validMoves = 0;
+            if (r + 1 < rows && isUnknown(board, r + 1, c)) {
+                candidates[validMoves++] = board.cellIndex(r + 1, c);
+            }
+            if (r - 1 >= 0 && isUnknown(board, r - 1, c)) {
+                candidates[validMoves++] = board.cellIndex(r - 1, c);
+            }
+            if (c + 1 < cols && isUnknown(board, r, c + 1)) {
+                candidates[validMoves++] = board.cellIndex(r, c + 1);
+            }
+            if (c - 1 >= 0 && isUnknown(board, r, c - 1)) {
+                candidates[validMoves++] = board.cellIndex(r, c - 1);
+            }
+            if (validMoves > 0) {
+                return candidates[getRandom().nextInt(validMoves)];
             }
         }
-        return null;
+        return NO_SHOT;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,286 @@
+// Bounded cache of AI decisions, keyed by the Zobrist hash of the opponent view (see Board.getInfoHash)
+// mixed with the rules, the ships still afloat and the strategy. Shared between threads: the keys are spread
+// over segments, each an access ordered LinkedHashMap evicting its least recently used entry.
+// An opening book (the decisions for the first shots of a game, computed ahead) can be loaded from disk;
+// its entries are looked up first and never evicted. Hits, misses and evictions are counted.
+// Build a book with: java DecisionCache [shots] [samples]
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class DecisionCache
+{
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final String BOOK_FILE = "opening-book.txt";
+    private static final int SEGMENTS = 16;
+    private static volatile DecisionCache shared;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<Long, Integer> book = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bookHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DecisionCache(int capacity)
+    {
+        int perSegment = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+        {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    // Cache used by the expensive AIs unless they are given another one. Created on first use, with the
+    // opening book of the data directory if there is one.
+    public static DecisionCache shared()
+    {
+        DecisionCache cache = shared;
+        if (cache == null)
+        {
+            synchronized (DecisionCache.class)
+            {
+                cache = shared;
+                if (cache == null)
+                {
+                    cache = new DecisionCache(DEFAULT_CAPACITY);
+                    File bookFile = new File(dataDir(), BOOK_FILE);
+                    if (bookFile.isFile())
+                    {
+                        try
+                        {
+                            cache.loadBook(bookFile.toPath());
+                        }
+                        catch (IOException | RuntimeException e)
+                        {
+                            System.err.println("Could not read opening book " + bookFile + ": " + e.getMessage());
+                        }
+                    }
+                    shared = cache;
+                }
+            }
+        }
+        return cache;
+    }
+    // where the game keeps its files, -Dbattleship.data.dir=... or ~/.battleship
+    public static File dataDir()
+    {
+        return new File(System.getProperty("battleship.data.dir", System.getProperty("user.home") + File.separator + ".battleship"));
+    }
+
+    // Key of a decision: the view of the board, its rules, the ships still afloat and who decides
+    public static long key(Board board, Class<?> strategy)
+    {
+        long z = board.getInfoHash();
+        z = mix(z ^ board.getRules().hashCode() * 0x9e3779b97f4a7c15L);
+        z = mix(z ^ board.getFleetStatus().getRemainingShips());
+        return mix(z ^ strategy.getName().hashCode());
+    }
+    // same, for a player whose decisions also depend on something else (variant 0 is the plain key)
+    public static long key(Board board, Class<?> strategy, long variant)
+    {
+        long key = key(board, strategy);
+        return variant == 0 ? key : mix(key ^ variant * 0x9e3779b97f4a7c15L);
+    }
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // cached cell for the key, or Player.NO_SHOT
+    public int get(long key)
+    {
+        Integer cell = book.get(key);
+        if (cell != null)
+        {
+            bookHits.increment();
+            return cell;
+        }
+        Segment segment = segment(key);
+        synchronized (segment)
+        {
+            cell = segment.get(key);
+        }
+        if (cell == null)
+        {
+            misses.increment();
+            return Player.NO_SHOT;
+        }
+        hits.increment();
+        return cell;
+    }
+    public void put(long key, int cell)
+    {
+        Segment segment = segment(key);
+        synchronized (segment)
+        {
+            segment.put(key, cell);
+        }
+    }
+    private Segment segment(long key)
+    {
+        return segments[(int) (key >>> 60) & (SEGMENTS - 1)];
+    }
+
+    public long getHits()
+    {
+        return hits.sum();
+    }
+    public long getBookHits()
+    {
+        return bookHits.sum();
+    }
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+    // share of lookups answered, book included
+    public double getHitRate()
+    {
+        long found = hits.sum() + bookHits.sum();
+        return (double) found / Math.max(1, found + misses.sum());
+    }
+    public int size()
+    {
+        int total = 0;
+        for (Segment segment : segments)
+        {
+            synchronized (segment)
+            {
+                total += segment.size();
+            }
+        }
+        return total;
+    }
+    public int getBookSize()
+    {
+        return book.size();
+    }
+    public String toString()
+    {
+        return String.format("hits %d, book hits %d, misses %d, evictions %d, hit rate %.1f%%",
+                getHits(), getBookHits(), getMisses(), getEvictions(), getHitRate() * 100);
+    }
+
+    // Opening book file: one "key cell" line per decision, key in hex, # starts a comment
+    public void loadBook(Path file) throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                book.put(Long.parseUnsignedLong(parts[0], 16), Integer.parseInt(parts[1]));
+            }
+        }
+    }
+    public void saveBook(Path file) throws IOException
+    {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+        {
+            writer.write("# opening book: zobrist decision key, cell to shoot");
+            writer.newLine();
+            for (Map.Entry<Long, Integer> entry : book.entrySet())
+            {
+                writer.write(Long.toHexString(entry.getKey()) + " " + entry.getValue());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    public void putBook(long key, int cell)
+    {
+        book.put(key, cell);
+    }
+
+    // Fills the book with the player's decisions for every view reachable in the first shots,
+    // following both a miss and a hit after each shot (sinking this early is ignored). Only the shot
+    // information of the view is set, the fleet under it is never looked at.
+    public void buildBook(ComputerPlayer player, int shots)
+    {
+        Player owner = new HumanPlayer(player.getRules()); // a fleet, so every ship counts as afloat
+        owner.placeShipsAutomatically();
+        Board view = owner.getBoard();
+        explore(player, view, shots);
+    }
+    private void explore(ComputerPlayer player, Board view, int shots)
+    {
+        if (shots == 0)
+        {
+            return;
+        }
+        long key = key(view, player.getClass());
+        int cell = (int) player.decide(view); // the book is for dense boards
+        if (cell == Player.NO_SHOT)
+        {
+            return;
+        }
+        book.put(key, cell);
+        int r = cell / view.getCols();
+        int c = cell % view.getCols();
+        for (char result : new char[]{'M', 'H'})
+        {
+            view.setInfoGrid(r, c, result);
+            explore(player, view, shots - 1);
+            view.setInfoGrid(r, c, ' ');
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int shots = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        DecisionCache cache = new DecisionCache(DEFAULT_CAPACITY);
+        MonteCarloComputerPlayer player = new MonteCarloComputerPlayer(GameRules.STANDARD, samples, 0);
+        player.setRandom(new java.util.SplittableRandom(0));
+        long start = System.nanoTime();
+        cache.buildBook(player, shots);
+        File dir = dataDir();
+        dir.mkdirs();
+        Path file = new File(dir, BOOK_FILE).toPath();
+        cache.saveBook(file);
+        System.out.printf("%d book entries for the first %d shots in %.1f s, written to %s%n",
+                cache.getBookSize(), shots, (System.nanoTime() - start) / 1e9, file);
+    }
+
+    // one LRU segment
+    private class Segment extends LinkedHashMap<Long, Integer>
+    {
+        private final int capacity;
+
+        Segment(int capacity)
+        {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest)
+        {
+            if (size() > capacity)
+            {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+// Whole-board bitboards: one bit per cell in row major order, plus a short ship id per cell.
+// Used for every board that is small enough to allocate in full (the standard 10x10 board is two longs per plane).
+
+import java.util.Arrays;
+
+class DenseOcean extends Ocean
+{
+    private final int cols;
+    private final long[][] planes;
+    private final short[] shipIds;
+
+    DenseOcean(int rows, int cols)
+    {
+        this.cols = cols;
+        int cells = rows * cols;
+        planes = new long[PLANES][(cells + 63) / 64];
+        shipIds = new short[cells];
+        Arrays.fill(shipIds, (short) -1);
+    }
+
+    boolean test(int plane, int r, int c)
+    {
+        int i = r * cols + c;
+        return (planes[plane][i >>> 6] & (1L << i)) != 0;
+    }
+    void set(int plane, int r, int c)
+    {
+        int i = r * cols + c;
+        planes[plane][i >>> 6] |= 1L << i;
+    }
+    void clear(int plane, int r, int c)
+    {
+        int i = r * cols + c;
+        planes[plane][i >>> 6] &= ~(1L << i);
+    }
+    int count(int plane)
+    {
+        int total = 0;
+        for (long word : planes[plane])
+        {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+    int getShipId(int r, int c)
+    {
+        return shipIds[r * cols + c];
+    }
+    void setShipId(int r, int c, int id)
+    {
+        shipIds[r * cols + c] = (short) id;
+    }
+    void clearShips()
+    {
+        Arrays.fill(planes[SHIP], 0L);
+        Arrays.fill(shipIds, (short) -1);
+    }
+    void clearAll()
+    {
+        for (long[] plane : planes)
+        {
+            Arrays.fill(plane, 0L);
+        }
+        Arrays.fill(shipIds, (short) -1);
+    }
+    long[] densePlane(int plane)
+    {
+        return planes[plane];
+    }
+    void forEach(int plane, CellVisitor visitor)
+    {
+        long[] bits = planes[plane];
+        for (int w = 0; w < bits.length; w++)
+        {
+            for (long word = bits[w]; word != 0; word &= word - 1)
+            {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                visitor.visit(i / cols, i % cols);
+            }
+        }
+    }
+}
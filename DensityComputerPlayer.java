@@ -0,0 +1,365 @@
+// Computer player that hunts by probability density: for every cell it keeps how many legal placements of the
+// ships still afloat cover it, and fires at the densest cell. A placement stops being legal once one of its cells
+// is shot, so the counts follow the shot results (onShotResult) instead of being recounted every turn.
+// While there are hits on ships not sunk yet it targets them: only placements through those hits are counted.
+// Dense boards only, on giant sparse boards it plays like ComputerPlayer.
+
+public class DensityComputerPlayer extends ComputerPlayer
+{
+    static final int BIT_PARALLEL_MIN_COLS = 96; // narrower boards recount faster scalar (java DensityKernels)
+
+    private transient Board tracked;         // opponent board the counts belong to
+    private transient int trackedVersion;    // its info version after the last shot we know of
+    private transient int rows, cols;
+    private transient int[] lengths;         // distinct ship lengths of the fleet
+    private transient int[] remaining;       // [length] ships of that length still afloat
+    private transient long[][][] legal;      // [horizontal ? 0 : 1][length] starts whose ship covers no shot cell
+    private transient int[][] cover;         // [length][cell] legal placements of that length covering the cell
+    private transient int[] density;         // [cell] sum over the lengths of remaining * cover
+    private transient int[] openHits;        // hit cells of ships not sunk yet
+    private transient int openHitCount;
+    private transient int[] score;           // targeting scratch, all zero between decisions
+    private transient int[] touched;         // cells with a score
+
+    public DensityComputerPlayer()
+    {
+    }
+    public DensityComputerPlayer(GameRules rules)
+    {
+        super(rules);
+    }
+
+    @Override
+    protected long decide(Board opponentBoard)
+    {
+        if (opponentBoard.getRules().isSparse())
+        {
+            return super.decide(opponentBoard);
+        }
+        if (opponentBoard != tracked || opponentBoard.getInfoVersion() != trackedVersion)
+        {
+            rebuild(opponentBoard); // first shot, or the board changed behind our back (undo, load)
+        }
+        int shot = openHitCount > 0 ? targetShot(opponentBoard) : huntShot(huntWeights(opponentBoard));
+        return shot != NO_SHOT ? shot : super.decide(opponentBoard);
+    }
+
+    @Override
+    public void onShotResult(Board opponentBoard, long cell, int result)
+    {
+        super.onShotResult(opponentBoard, cell, result); // keeps the fallback's target stack in step
+        if (opponentBoard != tracked || opponentBoard.getInfoVersion() == trackedVersion)
+        {
+            return; // not following this board, or the cell was shot before
+        }
+        if (opponentBoard.getInfoVersion() != trackedVersion + 1)
+        {
+            tracked = null; // missed a change, counted again on the next decision
+            return;
+        }
+        trackedVersion = opponentBoard.getInfoVersion();
+        int at = (int) cell; // only dense boards are tracked
+        removePlacementsThrough(at);
+        if (result == Board.HIT)
+        {
+            openHits[openHitCount++] = at;
+        }
+        else if (result == Board.SUNK)
+        {
+            dropDestroyedHits(opponentBoard);
+            updateRemaining(opponentBoard.getFleetStatus());
+        }
+    }
+
+    // placements of the ships still afloat covering the cell, 0 for shot cells
+    public int getDensity(int cell)
+    {
+        return density == null ? 0 : density[cell];
+    }
+
+    // densest cell (times its weight if there are weights), ties broken at random
+    private int huntShot(double[] weights)
+    {
+        if (weights != null)
+        {
+            return weightedHuntShot(weights);
+        }
+        int best = NO_SHOT;
+        int bestDensity = 0;
+        int ties = 0;
+        for (int cell = 0; cell < density.length; cell++)
+        {
+            int d = density[cell];
+            if (d > bestDensity)
+            {
+                best = cell;
+                bestDensity = d;
+                ties = 1;
+            }
+            else if (d == bestDensity && d > 0 && getRandom().nextInt(++ties) == 0)
+            {
+                best = cell;
+            }
+        }
+        return best;
+    }
+    private int weightedHuntShot(double[] weights)
+    {
+        int best = NO_SHOT;
+        double bestScore = 0;
+        int ties = 0;
+        for (int cell = 0; cell < density.length; cell++)
+        {
+            double score = density[cell] * weights[cell];
+            if (score > bestScore)
+            {
+                best = cell;
+                bestScore = score;
+                ties = 1;
+            }
+            else if (score == bestScore && score > 0 && getRandom().nextInt(++ties) == 0)
+            {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    // Scores every unknown cell by the placements through the open hits that could still be there
+    // (no miss or destroyed cell on them), placements through more hits weigh more.
+    // Each placement is counted from the first hit it covers only.
+    private int targetShot(Board board)
+    {
+        int touchedCount = 0;
+        for (int h = 0; h < openHitCount; h++)
+        {
+            int hitRow = openHits[h] / cols;
+            int hitCol = openHits[h] % cols;
+            for (int length : lengths)
+            {
+                if (remaining[length] == 0)
+                {
+                    continue;
+                }
+                for (int o = 0; o < 2; o++)
+                {
+                    for (int k = 0; k < length; k++)
+                    {
+                        int startRow = o == 0 ? hitRow : hitRow - k;
+                        int startCol = o == 0 ? hitCol - k : hitCol;
+                        if (startRow < 0 || startCol < 0 || (o == 0 ? startCol + length > cols : startRow + length > rows))
+                        {
+                            continue;
+                        }
+                        int hits = countHitsIfPossible(board, startRow, startCol, length, o == 0, k);
+                        if (hits == 0)
+                        {
+                            continue;
+                        }
+                        int weight = remaining[length] * hits * hits;
+                        for (int j = 0; j < length; j++)
+                        {
+                            int r = o == 0 ? startRow : startRow + j;
+                            int c = o == 0 ? startCol + j : startCol;
+                            if (!board.isShot(r, c))
+                            {
+                                int cell = r * cols + c;
+                                if (score[cell] == 0)
+                                {
+                                    touched[touchedCount++] = cell;
+                                }
+                                score[cell] += weight;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        int best = NO_SHOT;
+        int bestScore = 0;
+        int ties = 0;
+        for (int t = 0; t < touchedCount; t++)
+        {
+            int cell = touched[t];
+            if (score[cell] > bestScore)
+            {
+                best = cell;
+                bestScore = score[cell];
+                ties = 1;
+            }
+            else if (score[cell] == bestScore && getRandom().nextInt(++ties) == 0)
+            {
+                best = cell;
+            }
+            score[cell] = 0;
+        }
+        return best;
+    }
+    // Hits on a placement, or 0 if it crosses a miss or a sunk ship, or covers a hit before offset first
+    private static int countHitsIfPossible(Board board, int startRow, int startCol, int length, boolean horizontal, int first)
+    {
+        int hits = 0;
+        for (int j = 0; j < length; j++)
+        {
+            char v = board.getInfoCoord(horizontal ? startRow : startRow + j, horizontal ? startCol + j : startCol);
+            if (v == 'M' || v == 'D' || (v == 'H' && j < first))
+            {
+                return 0;
+            }
+            if (v == 'H')
+            {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    // every placement covering the cell becomes illegal
+    private void removePlacementsThrough(int cell)
+    {
+        int r = cell / cols;
+        int c = cell % cols;
+        for (int length : lengths)
+        {
+            long[] horizontal = legal[0][length];
+            for (int sc = Math.max(0, c - length + 1); sc <= Math.min(c, cols - length); sc++)
+            {
+                int start = r * cols + sc;
+                if ((horizontal[start >>> 6] & (1L << start)) != 0)
+                {
+                    horizontal[start >>> 6] &= ~(1L << start);
+                    uncover(length, start, 1);
+                }
+            }
+            long[] vertical = legal[1][length];
+            for (int sr = Math.max(0, r - length + 1); sr <= Math.min(r, rows - length); sr++)
+            {
+                int start = sr * cols + c;
+                if ((vertical[start >>> 6] & (1L << start)) != 0)
+                {
+                    vertical[start >>> 6] &= ~(1L << start);
+                    uncover(length, start, cols);
+                }
+            }
+        }
+    }
+    private void uncover(int length, int start, int step)
+    {
+        int[] lengthCover = cover[length];
+        int weight = remaining[length];
+        for (int k = 0, cell = start; k < length; k++, cell += step)
+        {
+            lengthCover[cell]--;
+            density[cell] -= weight;
+        }
+    }
+
+    // a ship sank: its cells are no longer open hits, and its length weighs one ship less
+    private void dropDestroyedHits(Board board)
+    {
+        int kept = 0;
+        for (int h = 0; h < openHitCount; h++)
+        {
+            if (board.getInfoCell(openHits[h]) != 'D')
+            {
+                openHits[kept++] = openHits[h];
+            }
+        }
+        openHitCount = kept;
+    }
+    private void updateRemaining(FleetStatus fleet)
+    {
+        for (int length : lengths)
+        {
+            while (remaining[length] > fleet.getRemaining(length))
+            {
+                remaining[length]--;
+                int[] lengthCover = cover[length];
+                for (int cell = 0; cell < density.length; cell++)
+                {
+                    density[cell] -= lengthCover[cell];
+                }
+            }
+        }
+    }
+
+    // counts everything again from the shots on the board
+    private void rebuild(Board board)
+    {
+        GameRules boardRules = board.getRules();
+        int cells = (int) boardRules.getCells();
+        if (tracked == null || !tracked.getRules().equals(boardRules) || density == null)
+        {
+            rows = boardRules.getRows();
+            cols = boardRules.getCols();
+            lengths = java.util.Arrays.stream(boardRules.getFleet().getLengths()).distinct().toArray();
+            int maxLength = boardRules.getFleet().getMaxLength();
+            remaining = new int[maxLength + 1];
+            legal = new long[2][maxLength + 1][];
+            cover = new int[maxLength + 1][];
+            for (int length : lengths)
+            {
+                legal[0][length] = new long[(cells + 63) / 64];
+                legal[1][length] = new long[(cells + 63) / 64];
+                cover[length] = new int[cells];
+            }
+            density = new int[cells];
+            openHits = new int[cells];
+            score = new int[cells];
+            touched = new int[cells];
+        }
+        tracked = board;
+        trackedVersion = board.getInfoVersion();
+        java.util.Arrays.fill(density, 0);
+        openHitCount = 0;
+        board.forEachOpenHit((r, c) -> openHits[openHitCount++] = r * cols + c);
+        if (cols >= BIT_PARALLEL_MIN_COLS && DensityKernels.fitsWords(lengths))
+        {
+            countPlacementsBitParallel(board);
+        }
+        else
+        {
+            countPlacementsScalar(board);
+        }
+    }
+    // legal starts and cover of every length from runs of free cells, one row or column at a time
+    private void countPlacementsScalar(Board board)
+    {
+        boolean[] free = DensityKernels.freeCells(board);
+        for (int length : lengths)
+        {
+            remaining[length] = board.getFleetStatus().getRemaining(length);
+            int[] lengthCover = cover[length];
+            java.util.Arrays.fill(lengthCover, 0);
+            DensityKernels.placementsScalar(free, rows, cols, length, legal[0][length], legal[1][length], lengthCover);
+            int weight = remaining[length];
+            for (int cell = 0; cell < density.length; cell++)
+            {
+                density[cell] += weight * lengthCover[cell];
+            }
+        }
+    }
+    // same counts with the bit parallel kernels: legal starts 64 cells at a time, then one pass per line for the cover
+    private void countPlacementsBitParallel(Board board)
+    {
+        long[] free = DensityKernels.freeBits(board);
+        long[] starts = new long[free.length];
+        for (int length : lengths)
+        {
+            remaining[length] = board.getFleetStatus().getRemaining(length);
+            int[] lengthCover = cover[length];
+            java.util.Arrays.fill(lengthCover, 0);
+            DensityKernels.horizontalStarts(free, rows, cols, length, starts);
+            DensityKernels.toCellBits(starts, rows, cols, legal[0][length]);
+            DensityKernels.addCover(starts, rows, cols, length, true, lengthCover);
+            DensityKernels.verticalStarts(free, rows, cols, length, starts);
+            DensityKernels.toCellBits(starts, rows, cols, legal[1][length]);
+            DensityKernels.addCover(starts, rows, cols, length, false, lengthCover);
+            int weight = remaining[length];
+            for (int cell = 0; cell < density.length; cell++)
+            {
+                density[cell] += weight * lengthCover[cell];
+            }
+        }
+    }
+}
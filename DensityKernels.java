@@ -0,0 +1,515 @@
+// Placement counting kernels for the density AI on large boards, in two versions over the same input:
+// - bit parallel (SWAR): the free cells are a row padded bitboard (row r in words [r * stride, (r + 1) * stride),
+//   column c is bit c % 64 of word c / 64 of its row, bits past the last column are 0). "A ship of length L can
+//   start here" is an AND of the row shifted by 1 .. L-1 columns (log L steps by doubling), or of L rows for
+//   vertical ships, 64 cells per operation. The counts are summed into bit-sliced counters: plane p holds bit p of
+//   the count of every cell, and adding a mask is a ripple carry over the planes, again 64 cells at a time.
+//   The densest cell is found on the planes too, without ever writing one int per cell.
+// - scalar: the same counts with one int per cell, from run lengths and a sliding window, the fallback for ships
+//   too long to shift in a word (64 or more), the faster way on narrow boards (the 10x10 game), and the reference
+//   the benchmark compares against.
+// Benchmark: java DensityKernels [rounds], both the density kernels and the starts and cover ones the density player
+// recounts with (it takes the bit parallel ones from DensityComputerPlayer.BIT_PARALLEL_MIN_COLS columns on)
+
+import java.util.Arrays;
+
+public final class DensityKernels
+{
+    private DensityKernels()
+    {
+    }
+
+    // longs per row of a row padded bitboard
+    public static int stride(int cols)
+    {
+        return (cols + 63) >>> 6;
+    }
+    // cells not shot at yet, row padded
+    public static long[] freeBits(Board board)
+    {
+        int rows = board.getRows();
+        int cols = board.getCols();
+        int stride = stride(cols);
+        long[] free = new long[rows * stride];
+        long[] row = fullRow(cols);
+        for (int r = 0; r < rows; r++)
+        {
+            System.arraycopy(row, 0, free, r * stride, stride);
+        }
+        board.forEachShot((r, c) -> free[r * stride + (c >>> 6)] &= ~(1L << c));
+        return free;
+    }
+    // cells not shot at yet, one per cell (row * cols + col)
+    public static boolean[] freeCells(Board board)
+    {
+        boolean[] free = new boolean[board.getRows() * board.getCols()];
+        Arrays.fill(free, true);
+        int cols = board.getCols();
+        board.forEachShot((r, c) -> free[r * cols + c] = false);
+        return free;
+    }
+    private static long[] fullRow(int cols)
+    {
+        long[] row = new long[stride(cols)];
+        Arrays.fill(row, -1L);
+        if ((cols & 63) != 0)
+        {
+            row[row.length - 1] = (1L << cols) - 1; // shifts use the low 6 bits, so this is cols % 64
+        }
+        return row;
+    }
+
+    // true if the bit parallel kernels can count ships of these lengths
+    public static boolean fitsWords(int[] lengths)
+    {
+        for (int length : lengths)
+        {
+            if (length >= 64)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ---- bit parallel ----
+
+    // Starts of horizontal ships of the length on free cells, into out (same layout)
+    public static void horizontalStarts(long[] free, int rows, int cols, int length, long[] out)
+    {
+        int stride = stride(cols);
+        System.arraycopy(free, 0, out, 0, rows * stride);
+        int covered = 1; // out has the starts of runs of this many free cells
+        while (covered < length)
+        {
+            int shift = Math.min(covered, length - covered);
+            for (int r = 0; r < rows; r++)
+            {
+                andShiftedRight(out, r * stride, stride, shift);
+            }
+            covered += shift;
+        }
+    }
+    // row[i] &= row shifted towards column 0 by k (1..63), in place: word i only reads words i and i+1,
+    // and word i+1 is changed after word i
+    private static void andShiftedRight(long[] bits, int from, int stride, int k)
+    {
+        int last = from + stride - 1;
+        for (int i = from; i < last; i++)
+        {
+            bits[i] &= (bits[i] >>> k) | (bits[i + 1] << (64 - k));
+        }
+        bits[last] &= bits[last] >>> k;
+    }
+    // Starts of vertical ships of the length on free cells, into out (same layout)
+    public static void verticalStarts(long[] free, int rows, int cols, int length, long[] out)
+    {
+        int stride = stride(cols);
+        System.arraycopy(free, 0, out, 0, rows * stride);
+        int covered = 1;
+        while (covered < length)
+        {
+            int shift = Math.min(covered, length - covered);
+            int rowsLeft = rows - shift;
+            for (int i = 0; i < rowsLeft * stride; i++)
+            {
+                out[i] &= out[i + shift * stride]; // the row below is changed later in the loop
+            }
+            Arrays.fill(out, Math.max(0, rowsLeft) * stride, rows * stride, 0);
+            covered += shift;
+        }
+    }
+
+    // Bit-sliced density: for every cell, the sum over the lengths of weight * placements of that length covering
+    // it. planes[p] holds bit p of every count; returns them (as many planes as the largest count needs)
+    public static long[][] density(long[] free, int rows, int cols, int[] lengths, int[] weights)
+    {
+        int stride = stride(cols);
+        int words = rows * stride;
+        long bound = 0;
+        for (int i = 0; i < lengths.length; i++)
+        {
+            bound += 2L * lengths[i] * weights[i];
+        }
+        long[][] planes = new long[Math.max(1, 64 - Long.numberOfLeadingZeros(bound))][words];
+        long[] starts = new long[words];
+        for (int i = 0; i < lengths.length; i++)
+        {
+            int length = lengths[i];
+            int weight = weights[i];
+            if (weight == 0)
+            {
+                continue;
+            }
+            horizontalStarts(free, rows, cols, length, starts);
+            for (int r = 0; r < rows; r++)
+            {
+                int from = r * stride;
+                for (int w = 0; w < stride; w++)
+                {
+                    // cells covered by a start k columns to their left, for k = 0 .. length - 1
+                    long current = starts[from + w];
+                    long previous = w > 0 ? starts[from + w - 1] : 0;
+                    addWeighted(planes, from + w, current, weight);
+                    for (int k = 1; k < length; k++)
+                    {
+                        addWeighted(planes, from + w, (current << k) | (previous >>> (64 - k)), weight);
+                    }
+                }
+            }
+            verticalStarts(free, rows, cols, length, starts);
+            for (int r = 0; r < rows; r++)
+            {
+                for (int k = 0; k < length && k <= r; k++)
+                {
+                    int above = (r - k) * stride;
+                    for (int w = 0; w < stride; w++)
+                    {
+                        addWeighted(planes, r * stride + w, starts[above + w], weight);
+                    }
+                }
+            }
+        }
+        return planes;
+    }
+    // adds weight to the counter of every cell set in the mask
+    private static void addWeighted(long[][] planes, int word, long mask, int weight)
+    {
+        if (mask == 0)
+        {
+            return;
+        }
+        for (int bit = 0; weight >>> bit != 0; bit++)
+        {
+            if ((weight >>> bit & 1) == 0)
+            {
+                continue;
+            }
+            long carry = mask;
+            for (int p = bit; carry != 0; p++)
+            {
+                long both = planes[p][word] & carry;
+                planes[p][word] ^= carry;
+                carry = both;
+            }
+        }
+    }
+    // count of one cell of bit-sliced planes
+    public static int countAt(long[][] planes, int cols, int r, int c)
+    {
+        int word = r * stride(cols) + (c >>> 6);
+        int count = 0;
+        for (int p = 0; p < planes.length; p++)
+        {
+            count |= (int) (planes[p][word] >>> c & 1) << p;
+        }
+        return count;
+    }
+    // Cell (row * cols + col) with the highest count, the first one in row major order on a tie, -1 if all are 0.
+    // From the top plane down, keeps the candidates with the bit set whenever there is one.
+    public static int densest(long[][] planes, int rows, int cols)
+    {
+        int stride = stride(cols);
+        int words = rows * stride;
+        long[] candidates = new long[words];
+        boolean any = false;
+        for (long[] plane : planes)
+        {
+            for (int i = 0; i < words; i++)
+            {
+                candidates[i] |= plane[i];
+                any |= plane[i] != 0;
+            }
+        }
+        if (!any)
+        {
+            return -1;
+        }
+        for (int p = planes.length - 1; p >= 0; p--)
+        {
+            long[] plane = planes[p];
+            boolean set = false;
+            for (int i = 0; i < words && !set; i++)
+            {
+                set = (candidates[i] & plane[i]) != 0;
+            }
+            if (set)
+            {
+                for (int i = 0; i < words; i++)
+                {
+                    candidates[i] &= plane[i];
+                }
+            }
+        }
+        for (int i = 0; i < words; i++)
+        {
+            if (candidates[i] != 0)
+            {
+                return (i / stride) * cols + ((i % stride) << 6) + Long.numberOfTrailingZeros(candidates[i]);
+            }
+        }
+        return -1;
+    }
+
+    // Adds to cover[row * cols + col] the number of placements of the length starting in starts that cover the cell,
+    // with a sliding window over every row (horizontal) or down every column (vertical)
+    public static void addCover(long[] starts, int rows, int cols, int length, boolean horizontal, int[] cover)
+    {
+        int stride = stride(cols);
+        if (horizontal)
+        {
+            for (int r = 0; r < rows; r++)
+            {
+                int inWindow = 0;
+                for (int c = 0; c < cols; c++)
+                {
+                    inWindow += (int) (starts[r * stride + (c >>> 6)] >>> c) & 1;
+                    if (c >= length)
+                    {
+                        int gone = c - length;
+                        inWindow -= (int) (starts[r * stride + (gone >>> 6)] >>> gone) & 1;
+                    }
+                    cover[r * cols + c] += inWindow;
+                }
+            }
+            return;
+        }
+        int[] inWindow = new int[cols];
+        for (int r = 0; r < rows; r++)
+        {
+            for (int c = 0; c < cols; c++)
+            {
+                inWindow[c] += (int) (starts[r * stride + (c >>> 6)] >>> c) & 1;
+                if (r >= length)
+                {
+                    inWindow[c] -= (int) (starts[(r - length) * stride + (c >>> 6)] >>> c) & 1;
+                }
+                cover[r * cols + c] += inWindow[c];
+            }
+        }
+    }
+    // a row padded bitboard as one bit per cell index (row * cols + col), the layout of the Board planes
+    public static void toCellBits(long[] rowBits, int rows, int cols, long[] cellBits)
+    {
+        int stride = stride(cols);
+        Arrays.fill(cellBits, 0);
+        for (int i = 0; i < rows * stride; i++)
+        {
+            long word = rowBits[i];
+            int base = (i / stride) * cols + ((i % stride) << 6);
+            while (word != 0)
+            {
+                int cell = base + Long.numberOfTrailingZeros(word);
+                cellBits[cell >>> 6] |= 1L << cell;
+                word &= word - 1;
+            }
+        }
+    }
+
+    // ---- scalar ----
+
+    // Same counts as density, one int per cell: a start is legal where the run of free cells reaching
+    // length - 1 cells further is long enough, a cell is covered by the starts in the window of length cells before it
+    public static int[] densityScalar(boolean[] free, int rows, int cols, int[] lengths, int[] weights)
+    {
+        int[] density = new int[rows * cols];
+        int[] run = new int[Math.max(rows, cols)];
+        int[] window = new int[Math.max(rows, cols)];
+        for (int i = 0; i < lengths.length; i++)
+        {
+            int length = lengths[i];
+            int weight = weights[i];
+            if (weight == 0)
+            {
+                continue;
+            }
+            for (int r = 0; r < rows; r++)
+            {
+                countLine(free, r * cols, 1, cols, length, weight, density, run, window);
+            }
+            for (int c = 0; c < cols; c++)
+            {
+                countLine(free, c, cols, rows, length, weight, density, run, window);
+            }
+        }
+        return density;
+    }
+    // Legal starts (cell bits, bit row * cols + col) of the ships of one length across and down, and how many of
+    // them cover each cell (added to cover): what horizontalStarts, verticalStarts and addCover give, the scalar way
+    public static void placementsScalar(boolean[] free, int rows, int cols, int length, long[] across, long[] down, int[] cover)
+    {
+        int[] run = new int[Math.max(rows, cols)];
+        Arrays.fill(across, 0);
+        Arrays.fill(down, 0);
+        for (int r = 0; r < rows; r++)
+        {
+            coverLine(free, r * cols, 1, cols, length, across, cover, run);
+        }
+        for (int c = 0; c < cols; c++)
+        {
+            coverLine(free, c, cols, rows, length, down, cover, run);
+        }
+    }
+    // one row or column of placementsScalar, same run and window as countLine
+    private static void coverLine(boolean[] free, int start, int step, int n, int length, long[] starts, int[] cover, int[] run)
+    {
+        int count = 0;
+        for (int k = n - 1; k >= 0; k--)
+        {
+            count = free[start + k * step] ? Math.min(count + 1, length) : 0;
+            run[k] = count;
+        }
+        int inWindow = 0;
+        for (int k = 0; k < n; k++)
+        {
+            int cell = start + k * step;
+            if (run[k] == length)
+            {
+                starts[cell >>> 6] |= 1L << cell;
+                inWindow++;
+            }
+            if (k >= length && run[k - length] == length)
+            {
+                inWindow--;
+            }
+            cover[cell] += inWindow;
+        }
+    }
+    // one row or column: cells start, start + step, ... (n of them)
+    private static void countLine(boolean[] free, int start, int step, int n, int length, int weight, int[] density, int[] run, int[] window)
+    {
+        // run[k]: free cells from k onwards (up to length)
+        int count = 0;
+        for (int k = n - 1; k >= 0; k--)
+        {
+            count = free[start + k * step] ? Math.min(count + 1, length) : 0;
+            run[k] = count;
+        }
+        int inWindow = 0; // legal starts among the last length positions
+        for (int k = 0; k < n; k++)
+        {
+            window[k] = run[k] == length ? 1 : 0;
+            inWindow += window[k];
+            if (k >= length)
+            {
+                inWindow -= window[k - length];
+            }
+            if (inWindow > 0)
+            {
+                density[start + k * step] += inWindow * weight;
+            }
+        }
+    }
+    // first cell with the highest count, -1 if all are 0
+    public static int densestScalar(int[] density)
+    {
+        int best = -1;
+        int bestDensity = 0;
+        for (int cell = 0; cell < density.length; cell++)
+        {
+            if (density[cell] > bestDensity)
+            {
+                best = cell;
+                bestDensity = density[cell];
+            }
+        }
+        return best;
+    }
+
+    // Times a full recount plus the densest cell, both ways, and the legal starts and cover of every length,
+    // both ways, on boards with a tenth of the cells shot
+    public static void main(String[] args)
+    {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        System.out.printf("%-11s %14s %14s %8s %14s %14s %8s%n", "board", "density scalar", "bit parallel", "speedup",
+                "cover scalar", "bit parallel", "speedup");
+        for (int size : new int[]{10, 32, 64, 100, 256, 1000})
+        {
+            GameRules rules = new GameRules(size, size, FleetSpec.STANDARD);
+            Board board = new Board(rules);
+            java.util.SplittableRandom rand = new java.util.SplittableRandom(size);
+            for (long shot = 0; shot < rules.getCells() / 10; shot++)
+            {
+                board.setInfoGrid(rand.nextInt(size), rand.nextInt(size), 'M');
+            }
+            int[] lengths = Arrays.stream(rules.getFleet().getLengths()).distinct().toArray();
+            int[] weights = new int[lengths.length]; // ships of each length
+            for (int length : rules.getFleet().getLengths())
+            {
+                for (int i = 0; i < lengths.length; i++)
+                {
+                    weights[i] += lengths[i] == length ? 1 : 0;
+                }
+            }
+            int repeat = Math.max(1, 2_000_000 / size / size);
+            long scalar = Long.MAX_VALUE;
+            long parallel = Long.MAX_VALUE;
+            int scalarCell = -1;
+            int parallelCell = -1;
+            for (int round = 0; round < rounds; round++)
+            {
+                long start = System.nanoTime();
+                for (int k = 0; k < repeat; k++)
+                {
+                    scalarCell = densestScalar(densityScalar(freeCells(board), size, size, lengths, weights));
+                }
+                scalar = Math.min(scalar, (System.nanoTime() - start) / repeat);
+                start = System.nanoTime();
+                for (int k = 0; k < repeat; k++)
+                {
+                    parallelCell = densest(density(freeBits(board), size, size, lengths, weights), size, size);
+                }
+                parallel = Math.min(parallel, (System.nanoTime() - start) / repeat);
+            }
+            if (scalarCell != parallelCell)
+            {
+                throw new IllegalStateException("kernels disagree on " + size + "x" + size + ": " + scalarCell + " vs " + parallelCell);
+            }
+            int cells = size * size;
+            long[][] legalScalar = {new long[(cells + 63) / 64], new long[(cells + 63) / 64]};
+            long[][] legalParallel = {new long[(cells + 63) / 64], new long[(cells + 63) / 64]};
+            int[] coverScalar = new int[cells];
+            int[] coverParallel = new int[cells];
+            long[] starts = new long[size * stride(size)];
+            long coverScalarTime = Long.MAX_VALUE;
+            long coverParallelTime = Long.MAX_VALUE;
+            for (int round = 0; round < rounds; round++)
+            {
+                long start = System.nanoTime();
+                for (int k = 0; k < repeat; k++)
+                {
+                    boolean[] free = freeCells(board);
+                    Arrays.fill(coverScalar, 0);
+                    for (int length : lengths)
+                    {
+                        placementsScalar(free, size, size, length, legalScalar[0], legalScalar[1], coverScalar);
+                    }
+                }
+                coverScalarTime = Math.min(coverScalarTime, (System.nanoTime() - start) / repeat);
+                start = System.nanoTime();
+                for (int k = 0; k < repeat; k++)
+                {
+                    long[] free = freeBits(board);
+                    Arrays.fill(coverParallel, 0);
+                    for (int length : lengths)
+                    {
+                        horizontalStarts(free, size, size, length, starts);
+                        toCellBits(starts, size, size, legalParallel[0]);
+                        addCover(starts, size, size, length, true, coverParallel);
+                        verticalStarts(free, size, size, length, starts);
+                        toCellBits(starts, size, size, legalParallel[1]);
+                        addCover(starts, size, size, length, false, coverParallel);
+                    }
+                }
+                coverParallelTime = Math.min(coverParallelTime, (System.nanoTime() - start) / repeat);
+            }
+            if (!Arrays.equals(coverScalar, coverParallel) || !Arrays.equals(legalScalar[0], legalParallel[0])
+                    || !Arrays.equals(legalScalar[1], legalParallel[1]))
+            {
+                throw new IllegalStateException("cover kernels disagree on " + size + "x" + size);
+            }
+            System.out.printf("%-11s %14.1f %14.1f %7.1fx %14.1f %14.1f %7.1fx%n", size + "x" + size, scalar / 1e3, parallel / 1e3,
+                    (double) scalar / parallel, coverScalarTime / 1e3, coverParallelTime / 1e3, (double) coverScalarTime / coverParallelTime);
+        }
+    }
+}
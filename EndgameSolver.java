@@ -0,0 +1,387 @@
+// Exact solver for the end of a game. Once only a few ships are afloat, every layout of them that agrees with
+// the view (no ship on a miss or a sunk cell, every open hit covered, no overlap) can be enumerated. The cell
+// that lies under a ship in the most layouts is the shot most likely to hit.
+// Depth first search over the legal placements of each ship, longest first; ships of the same length only in
+// increasing placement order, since swapping them gives the same layout. The last ship's candidates only depend
+// on which hits the others left uncovered, so they are filtered once per uncovered set (memo). Large searches
+// are split over a fork/join pool by the first ship's placement. Gives up (NO_SHOT) at the deadline, if it has one.
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+
+public class EndgameSolver
+{
+    public static final int DEFAULT_MAX_SHIPS = 2;
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+    private static final long PARALLEL_WORK = 1 << 18; // placement pairs above which the search is split
+    private static final int MAX_OPEN_HITS = 64;       // one bit per open hit
+    private static final int MAX_MASK_WORDS = 4;       // boards up to 256 cells test overlaps with bit masks
+
+    private final int maxShips;
+    private final long budgetNanos;
+    private volatile long lastLayouts;
+
+    public EndgameSolver()
+    {
+        this(DEFAULT_MAX_SHIPS, DEFAULT_BUDGET_MILLIS);
+    }
+    // budgetMillis <= 0 means no deadline, the search always runs to the end
+    public EndgameSolver(int maxShips, long budgetMillis)
+    {
+        this.maxShips = maxShips;
+        this.budgetNanos = budgetMillis > 0 ? budgetMillis * 1_000_000L : Long.MAX_VALUE;
+    }
+
+    // true if the solver is worth trying on this view
+    public boolean applies(Board board)
+    {
+        int afloat = board.getFleetStatus().getRemainingShips();
+        return !board.getRules().isSparse() && afloat >= 1 && afloat <= maxShips;
+    }
+
+    // Best shot on the view, or NO_SHOT if it does not apply, no layout agrees or the time ran out
+    public int solve(Board board)
+    {
+        if (!applies(board))
+        {
+            return Player.NO_SHOT;
+        }
+        Problem problem = new Problem(board, budgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + budgetNanos);
+        if (problem.openHits.length > MAX_OPEN_HITS)
+        {
+            return Player.NO_SHOT;
+        }
+        Search search = new Search(problem, 0, problem.placements[0].length);
+        long[] counts = search.invoke();
+        if (counts == null)
+        {
+            return Player.NO_SHOT; // out of time
+        }
+        lastLayouts = counts[problem.cells];
+        int best = Player.NO_SHOT;
+        long bestCount = 0;
+        for (int cell = 0; cell < problem.cells; cell++)
+        {
+            if (counts[cell] > bestCount && !board.isShotCell(cell))
+            {
+                best = cell;
+                bestCount = counts[cell];
+            }
+        }
+        return best;
+    }
+    // layouts counted by the last solve
+    public long getLastLayouts()
+    {
+        return lastLayouts;
+    }
+
+    // The view, the ships afloat and their legal placements
+    private static class Problem
+    {
+        final int cols, cells;
+        final int[] ships;            // lengths afloat, longest first
+        final int[][] placements;     // [ship] legal placements, start cell * 2 + (horizontal ? 0 : 1)
+        final long[][] covers;        // [ship][placement] open hits it covers, one bit per hit
+        final int words;              // longs per cell mask
+        final long[][] masks;         // [ship][placement * words + w] cells of the placement, small boards only
+        final int[] openHits;
+        final long allHits;
+        final long deadline;
+        final Map<Long, int[]> lastCandidates = new ConcurrentHashMap<>(); // uncovered hits -> last ship's placements
+
+        Problem(Board board, long deadline)
+        {
+            this.deadline = deadline;
+            int rows = board.getRows();
+            cols = board.getCols();
+            cells = (int) board.getRules().getCells();
+            FleetStatus status = board.getFleetStatus();
+            int[] afloat = new int[status.getRemainingShips()];
+            int n = 0;
+            for (int length = status.getMaxLength(); length >= 1; length--)
+            {
+                for (int k = 0; k < status.getRemaining(length); k++)
+                {
+                    afloat[n++] = length;
+                }
+            }
+            ships = afloat;
+            int[] hitIndex = new int[cells];
+            Arrays.fill(hitIndex, -1);
+            int[] hits = new int[Math.min(cells, MAX_OPEN_HITS + 1)];
+            int hitCount = 0;
+            for (int cell = 0; cell < cells && hitCount < hits.length; cell++)
+            {
+                if (board.getInfoCell(cell) == 'H')
+                {
+                    hitIndex[cell] = hitCount;
+                    hits[hitCount++] = cell;
+                }
+            }
+            openHits = Arrays.copyOf(hits, hitCount);
+            allHits = hitCount >= 64 ? -1L : (1L << hitCount) - 1;
+            placements = new int[ships.length][];
+            covers = new long[ships.length][];
+            words = (cells + 63) / 64;
+            masks = words <= MAX_MASK_WORDS ? new long[ships.length][] : null;
+            for (int s = 0; s < ships.length; s++)
+            {
+                if (s > 0 && ships[s] == ships[s - 1])
+                {
+                    placements[s] = placements[s - 1]; // same length, same placements
+                    covers[s] = covers[s - 1];
+                    if (masks != null)
+                    {
+                        masks[s] = masks[s - 1];
+                    }
+                    continue;
+                }
+                int length = ships[s];
+                int[] list = new int[2 * cells];
+                long[] hitMasks = new long[2 * cells];
+                int count = 0;
+                for (int o = 0; o < 2; o++)
+                {
+                    int step = o == 0 ? 1 : cols;
+                    for (int r = 0; r <= (o == 0 ? rows - 1 : rows - length); r++)
+                    {
+                        for (int c = 0; c <= (o == 0 ? cols - length : cols - 1); c++)
+                        {
+                            int start = r * cols + c;
+                            long mask = 0;
+                            boolean legal = true;
+                            for (int k = 0, cell = start; k < length && legal; k++, cell += step)
+                            {
+                                char v = board.getInfoCell(cell);
+                                legal = v != 'M' && v != 'D';
+                                if (hitIndex[cell] >= 0 && hitIndex[cell] < 64)
+                                {
+                                    mask |= 1L << hitIndex[cell];
+                                }
+                            }
+                            if (legal)
+                            {
+                                list[count] = start * 2 + o;
+                                hitMasks[count++] = mask;
+                            }
+                        }
+                    }
+                }
+                placements[s] = Arrays.copyOf(list, count);
+                covers[s] = Arrays.copyOf(hitMasks, count);
+                if (masks != null)
+                {
+                    masks[s] = new long[count * words];
+                    for (int i = 0; i < count; i++)
+                    {
+                        int step = (list[i] & 1) == 0 ? 1 : cols;
+                        for (int k = 0, cell = list[i] >> 1; k < length; k++, cell += step)
+                        {
+                            masks[s][i * words + (cell >>> 6)] |= 1L << cell;
+                        }
+                    }
+                }
+            }
+        }
+
+        // placements of the last ship covering every hit of the mask, in placement order
+        int[] candidates(long needed)
+        {
+            return lastCandidates.computeIfAbsent(needed, key -> {
+                int last = ships.length - 1;
+                int[] list = new int[placements[last].length];
+                int n = 0;
+                for (int i = 0; i < list.length; i++)
+                {
+                    if ((covers[last][i] & needed) == needed)
+                    {
+                        list[n++] = i;
+                    }
+                }
+                return Arrays.copyOf(list, n);
+            });
+        }
+    }
+
+    // Counts the layouts whose first ship is placement from..to-1: per cell how many layouts cover it,
+    // with the number of layouts in the last slot. Null if the deadline passed.
+    private static class Search extends RecursiveTask<long[]>
+    {
+        private final Problem problem;
+        private final int from, to;
+        private long[] counts;
+        private long[] lastUse;       // layouts found per placement of the last ship, turned into counts at the end
+        private boolean[] occupied;
+        private long[] occupiedMask;
+        private int[] chosen;
+        private long steps;
+        private boolean timedOut;
+
+        Search(Problem problem, int from, int to)
+        {
+            this.problem = problem;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute()
+        {
+            long work = (long) (to - from) * (problem.ships.length > 1 ? problem.placements[1].length : 1);
+            if (problem.ships.length > 1 && work > PARALLEL_WORK && to - from > 1)
+            {
+                int middle = (from + to) >>> 1;
+                Search left = new Search(problem, from, middle);
+                Search right = new Search(problem, middle, to);
+                invokeAll(left, right);
+                long[] a = left.join();
+                long[] b = right.join();
+                if (a == null || b == null)
+                {
+                    return null;
+                }
+                for (int i = 0; i < a.length; i++)
+                {
+                    a[i] += b[i];
+                }
+                return a;
+            }
+            int last = problem.ships.length - 1;
+            counts = new long[problem.cells + 1];
+            lastUse = new long[problem.placements[last].length];
+            if (problem.masks != null)
+            {
+                occupiedMask = new long[problem.words];
+            }
+            else
+            {
+                occupied = new boolean[problem.cells];
+            }
+            chosen = new int[problem.ships.length];
+            search(0, 0, -1);
+            if (timedOut)
+            {
+                return null;
+            }
+            for (int i = 0; i < lastUse.length; i++)
+            {
+                if (lastUse[i] > 0)
+                {
+                    add(problem.placements[last][i], problem.ships[last], lastUse[i]);
+                }
+            }
+            return counts;
+        }
+
+        private void search(int depth, long covered, int previous)
+        {
+            int[] placements = problem.placements[depth];
+            int length = problem.ships[depth];
+            boolean sameAsPrevious = depth > 0 && problem.ships[depth - 1] == length;
+            if (depth == problem.ships.length - 1)
+            {
+                int[] candidates = problem.candidates(problem.allHits & ~covered);
+                long layouts = 0;
+                for (int i : candidates)
+                {
+                    if ((++steps & 4095) == 0 && outOfTime())
+                    {
+                        return;
+                    }
+                    if ((sameAsPrevious && i <= previous) || overlaps(depth, i))
+                    {
+                        continue;
+                    }
+                    lastUse[i]++;
+                    layouts++;
+                }
+                for (int d = 0; d < depth; d++)
+                {
+                    add(problem.placements[d][chosen[d]], problem.ships[d], layouts);
+                }
+                counts[problem.cells] += layouts;
+                return;
+            }
+            int first = depth == 0 ? from : 0;
+            int last = depth == 0 ? to : placements.length;
+            for (int i = first; i < last && !timedOut; i++)
+            {
+                if ((++steps & 4095) == 0 && outOfTime())
+                {
+                    return;
+                }
+                if ((sameAsPrevious && i <= previous) || overlaps(depth, i))
+                {
+                    continue;
+                }
+                mark(depth, i, true);
+                chosen[depth] = i;
+                search(depth + 1, covered | problem.covers[depth][i], i);
+                mark(depth, i, false);
+            }
+        }
+        private boolean outOfTime()
+        {
+            if (problem.deadline != Long.MAX_VALUE && System.nanoTime() - problem.deadline > 0)
+            {
+                timedOut = true;
+            }
+            return timedOut;
+        }
+        private boolean overlaps(int ship, int i)
+        {
+            if (occupiedMask != null)
+            {
+                long[] mask = problem.masks[ship];
+                for (int w = 0, at = i * problem.words; w < problem.words; w++, at++)
+                {
+                    if ((mask[at] & occupiedMask[w]) != 0)
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int placement = problem.placements[ship][i];
+            int step = (placement & 1) == 0 ? 1 : problem.cols;
+            for (int k = 0, cell = placement >> 1; k < problem.ships[ship]; k++, cell += step)
+            {
+                if (occupied[cell])
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // ships never overlap, so clearing a placement's cells restores the state before it
+        private void mark(int ship, int i, boolean value)
+        {
+            if (occupiedMask != null)
+            {
+                long[] mask = problem.masks[ship];
+                for (int w = 0, at = i * problem.words; w < problem.words; w++, at++)
+                {
+                    occupiedMask[w] = value ? occupiedMask[w] | mask[at] : occupiedMask[w] & ~mask[at];
+                }
+                return;
+            }
+            int placement = problem.placements[ship][i];
+            int step = (placement & 1) == 0 ? 1 : problem.cols;
+            for (int k = 0, cell = placement >> 1; k < problem.ships[ship]; k++, cell += step)
+            {
+                occupied[cell] = value;
+            }
+        }
+        private void add(int placement, int length, long layouts)
+        {
+            int step = (placement & 1) == 0 ? 1 : problem.cols;
+            for (int k = 0, cell = placement >> 1; k < length; k++, cell += step)
+            {
+                counts[cell] += layouts;
+            }
+        }
+    }
+}
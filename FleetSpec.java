@@ -0,0 +1,90 @@
+// Fleet composition: the length and display name of every ship a player places.
+// STANDARD is the classic fleet (Carrier 5, Battleship 4, Cruiser 3, Destroyer 2).
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public final class FleetSpec implements Serializable
+{
+    public static final int MAX_SHIP_LENGTH = 64; // ships keep their hits in a long bitmask
+    public static final int MAX_SHIPS = Short.MAX_VALUE;
+    public static final FleetSpec STANDARD = new FleetSpec(
+        new int[]{5, 4, 3, 2},
+        new String[]{"Carrier", "Battleship", "Cruiser", "Destroyer"});
+
+    private final int[] lengths;
+    private final String[] names;
+
+    public FleetSpec(int[] lengths, String[] names)
+    {
+        if (lengths.length == 0 || lengths.length > MAX_SHIPS)
+        {
+            throw new IllegalArgumentException("fleet needs between 1 and " + MAX_SHIPS + " ships");
+        }
+        if (names != null && names.length != lengths.length)
+        {
+            throw new IllegalArgumentException("one name per ship expected");
+        }
+        for (int length : lengths)
+        {
+            if (length < 1 || length > MAX_SHIP_LENGTH)
+            {
+                throw new IllegalArgumentException("ship length must be between 1 and " + MAX_SHIP_LENGTH + ": " + length);
+            }
+        }
+        this.lengths = lengths.clone();
+        this.names = names == null ? null : names.clone();
+    }
+    // fleet without names, ships are shown as "Ship (length)"
+    public FleetSpec(int... lengths)
+    {
+        this(lengths, null);
+    }
+
+    public int size()
+    {
+        return lengths.length;
+    }
+    public int getLength(int i)
+    {
+        return lengths[i];
+    }
+    public String getName(int i)
+    {
+        return names == null ? "Ship" : names[i];
+    }
+    public int[] getLengths()
+    {
+        return lengths.clone();
+    }
+    public int getTotalCells()
+    {
+        int total = 0;
+        for (int length : lengths)
+        {
+            total += length;
+        }
+        return total;
+    }
+    public int getMaxLength()
+    {
+        int max = 0;
+        for (int length : lengths)
+        {
+            max = Math.max(max, length);
+        }
+        return max;
+    }
+    public boolean equals(Object o)
+    {
+        return o instanceof FleetSpec && Arrays.equals(lengths, ((FleetSpec) o).lengths);
+    }
+    public int hashCode()
+    {
+        return Arrays.hashCode(lengths);
+    }
+    public String toString()
+    {
+        return Arrays.toString(lengths);
+    }
+}
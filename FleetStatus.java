@@ -0,0 +1,73 @@
+// Live summary of a fleet on a board: ship cells still afloat, ships still afloat,
+// and how many ships of each length were placed and sunk. Board updates it on every placement and hit,
+// so game over checks and the status bar only read counters.
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class FleetStatus implements Serializable
+{
+    private int remainingCells;
+    private int remainingShips;
+    private int[] placedByLength = new int[6]; // index = ship length
+    private int[] sunkByLength = new int[6];
+
+    void shipPlaced(int length)
+    {
+        if (length >= placedByLength.length)
+        {
+            placedByLength = Arrays.copyOf(placedByLength, length + 1);
+            sunkByLength = Arrays.copyOf(sunkByLength, length + 1);
+        }
+        placedByLength[length]++;
+        remainingCells += length;
+        remainingShips++;
+    }
+    void cellHit()
+    {
+        remainingCells--;
+    }
+    void shipSunk(int length)
+    {
+        sunkByLength[length]++;
+        remainingShips--;
+    }
+    void clear()
+    {
+        remainingCells = 0;
+        remainingShips = 0;
+        Arrays.fill(placedByLength, 0);
+        Arrays.fill(sunkByLength, 0);
+    }
+
+    public int getRemainingCells()
+    {
+        return remainingCells;
+    }
+    public int getRemainingShips()
+    {
+        return remainingShips;
+    }
+    public boolean allSunk()
+    {
+        return remainingShips == 0;
+    }
+    // longest length a ship can have in this fleet (array bound for the by-length queries)
+    public int getMaxLength()
+    {
+        return placedByLength.length - 1;
+    }
+    public int getPlaced(int length)
+    {
+        return length < placedByLength.length ? placedByLength[length] : 0;
+    }
+    public int getSunk(int length)
+    {
+        return length < sunkByLength.length ? sunkByLength[length] : 0;
+    }
+    // ships of this length still afloat
+    public int getRemaining(int length)
+    {
+        return getPlaced(length) - getSunk(length);
+    }
+}
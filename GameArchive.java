@@ -0,0 +1,625 @@
+// Archive of many finished games in one file, for simulation runs of millions of games. All games of an archive
+// have the same rules. A game is a bit-packed record: who shot first (1 bit), both fleets as a fixed-size header
+// (per ship in fleet order: start cell and orientation, cellBits + 1 bits), the shot count (countBits), then every
+// shot as a cell of cellBits, padded to a byte. The players take turns, so the shooter of every shot follows from
+// the first one. On the standard board a cell takes 7 bits: the shots of a 100-shot game take 88 bytes, its whole
+// record (with the 65-bit header of the standard fleet and the 8-bit count) 97 bytes.
+// Layout: magic, version, rows, cols (ints), game count, index offset (longs), fleet size (int) and one byte per
+// ship length, padded to 8 bytes; the records; then the index, the offset of every game (longs). The index and
+// count are written when the writer is closed; an archive that was not closed is indexed by scanning it.
+// The reader maps the file in overlapping 1 GB windows (every record lies whole in the window it starts in), so
+// random access through the index and sequential scans both read straight from the page cache.
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+public final class GameArchive
+{
+    private static final int MAGIC = 0x42534741; // "BSGA"
+    private static final int VERSION = 1;
+    private static final int GAMES_OFFSET = 16;
+    private static final int INDEX_OFFSET = 24;
+    private static final int FLEET_OFFSET = 32;
+    private static final long WINDOW = 1L << 30;
+
+    private final GameRules rules;
+    private final Format format;
+    private final long games;
+    private final long indexOffset;         // 0 if the index was rebuilt into memory
+    private final long[] scannedIndex;      // offsets found by scanning an archive that was not closed
+    private final long recordsEnd;
+    private final MappedByteBuffer[] windows;
+
+    // bit widths of the records of one set of rules
+    private static final class Format
+    {
+        final GameRules rules;
+        final int ships, cellBits, countBits, fleetBits, maxShots, maxRecordBytes, headerBytes;
+
+        Format(GameRules rules)
+        {
+            if (rules.isSparse())
+            {
+                throw new IllegalArgumentException("no game archive for sparse boards");
+            }
+            this.rules = rules;
+            int cells = (int) rules.getCells();
+            ships = rules.getFleet().size();
+            cellBits = Math.max(1, 32 - Integer.numberOfLeadingZeros(cells - 1));
+            maxShots = 2 * cells;
+            countBits = 32 - Integer.numberOfLeadingZeros(maxShots);
+            fleetBits = 1 + 2 * ships * (cellBits + 1);
+            maxRecordBytes = (int) ((fleetBits + countBits + (long) maxShots * cellBits + 7) / 8);
+            headerBytes = (FLEET_OFFSET + 4 + ships + 7) & ~7;
+        }
+    }
+
+    private GameArchive(Format format, long games, long indexOffset, long[] scannedIndex, long recordsEnd, MappedByteBuffer[] windows)
+    {
+        this.rules = format.rules;
+        this.format = format;
+        this.games = games;
+        this.indexOffset = indexOffset;
+        this.scannedIndex = scannedIndex;
+        this.recordsEnd = recordsEnd;
+        this.windows = windows;
+    }
+
+    // A new archive for games of the rules, replacing the file
+    public static Writer create(Path file, GameRules rules) throws IOException
+    {
+        return new Writer(file, new Format(rules));
+    }
+
+    // Maps an archive for reading
+    public static GameArchive open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(FLEET_OFFSET + 4);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+            {
+                // header fields
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC)
+            {
+                throw new IOException("not a game archive");
+            }
+            if (header.getInt(4) != VERSION)
+            {
+                throw new IOException("unsupported game archive version " + header.getInt(4));
+            }
+            int ships = header.getInt(FLEET_OFFSET);
+            if (ships < 1 || ships > FleetSpec.MAX_SHIPS || FLEET_OFFSET + 4L + ships > size)
+            {
+                throw new IOException("game archive damaged: bad fleet size " + ships);
+            }
+            ByteBuffer lengths = ByteBuffer.allocate(ships);
+            while (lengths.hasRemaining() && channel.read(lengths, FLEET_OFFSET + 4 + lengths.position()) > 0)
+            {
+                // ship lengths
+            }
+            int[] fleet = new int[lengths.capacity()];
+            for (int i = 0; i < fleet.length; i++)
+            {
+                fleet[i] = lengths.get(i);
+            }
+            Format format;
+            try
+            {
+                format = new Format(new GameRules(header.getInt(8), header.getInt(12), new FleetSpec(fleet)));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException("game archive damaged: " + e.getMessage(), e);
+            }
+            long games = header.getLong(GAMES_OFFSET);
+            long indexOffset = header.getLong(INDEX_OFFSET);
+            if (indexOffset != 0 && (indexOffset < format.headerBytes || indexOffset + 8 * games != size))
+            {
+                throw new IOException("game archive damaged: index does not fit the file");
+            }
+            MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((size + WINDOW - 1) / WINDOW)];
+            for (int w = 0; w < windows.length; w++)
+            {
+                long start = w * WINDOW;
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, WINDOW + format.maxRecordBytes + 8));
+                windows[w].order(ByteOrder.LITTLE_ENDIAN); // records are bit streams, least significant first
+            }
+            if (indexOffset != 0)
+            {
+                return new GameArchive(format, games, indexOffset, null, indexOffset, windows);
+            }
+            // not closed: index whatever whole records there are
+            GameArchive partial = new GameArchive(format, 0, 0, new long[0], size, windows);
+            long[] index = partial.scanOffsets();
+            return new GameArchive(format, index.length, 0, index, index.length == 0 ? format.headerBytes
+                    : index[index.length - 1] + partial.recordBytes(index[index.length - 1]), windows);
+        }
+    }
+
+    public GameRules getRules()
+    {
+        return rules;
+    }
+    public long size()
+    {
+        return games;
+    }
+
+    // Game number i (0 = first added)
+    public Game get(long i)
+    {
+        if (i < 0 || i >= games)
+        {
+            throw new IndexOutOfBoundsException("game " + i + " of " + games);
+        }
+        long offset = scannedIndex != null ? scannedIndex[(int) i] : Long.reverseBytes(window(indexOffset + 8 * i).getLong(local(indexOffset + 8 * i)));
+        Game game = new Game(format);
+        game.read(this, offset);
+        return game;
+    }
+    // Visits every game in file order. The same Game object is passed every time, copy() one to keep it.
+    public void scan(Consumer<Game> visitor)
+    {
+        Game game = new Game(format);
+        long offset = format.headerBytes;
+        for (long i = 0; i < games; i++)
+        {
+            offset += game.read(this, offset);
+            visitor.accept(game);
+        }
+    }
+
+    // record offsets found by walking the records up to the end of the file
+    private long[] scanOffsets()
+    {
+        List<Long> offsets = new ArrayList<>();
+        long offset = format.headerBytes;
+        while (offset < recordsEnd)
+        {
+            long bytes = recordBytes(offset);
+            if (bytes <= 0 || offset + bytes > recordsEnd)
+            {
+                break; // torn last record
+            }
+            offsets.add(offset);
+            offset += bytes;
+        }
+        long[] index = new long[offsets.size()];
+        for (int i = 0; i < index.length; i++)
+        {
+            index[i] = offsets.get(i);
+        }
+        return index;
+    }
+    // size of the record at the offset, 0 if it cannot be one
+    private long recordBytes(long offset)
+    {
+        if (offset + (format.fleetBits + format.countBits + 7) / 8 > recordsEnd)
+        {
+            return 0;
+        }
+        BitReader in = new BitReader(window(offset), local(offset));
+        in.skip(format.fleetBits);
+        int count = (int) in.read(format.countBits);
+        return count > format.maxShots ? 0 : (format.fleetBits + format.countBits + (long) count * format.cellBits + 7) / 8;
+    }
+    private ByteBuffer window(long offset)
+    {
+        return windows[(int) (offset / WINDOW)];
+    }
+    private static int local(long offset)
+    {
+        return (int) (offset % WINDOW);
+    }
+
+    // Bits of a record, least significant bit first
+    private static final class BitReader
+    {
+        private final ByteBuffer buffer;
+        private int position;     // next byte
+        private long bits;
+        private int available;
+
+        BitReader(ByteBuffer buffer, int position)
+        {
+            this.buffer = buffer;
+            this.position = position;
+        }
+        long read(int width)
+        {
+            if (available < width)
+            {
+                if (position + 8 <= buffer.limit())
+                {
+                    // as many whole bytes as fit in one little endian read
+                    int take = (63 - available) >>> 3;
+                    bits |= (buffer.getLong(position) & (-1L >>> (64 - 8 * take))) << available;
+                    position += take;
+                    available += 8 * take;
+                }
+                while (available < width)
+                {
+                    bits |= (long) (buffer.get(position++) & 0xFF) << available;
+                    available += 8;
+                }
+            }
+            long value = bits & ((1L << width) - 1);
+            bits >>>= width;
+            available -= width;
+            return value;
+        }
+        void skip(int width)
+        {
+            while (width > 32)
+            {
+                read(32);
+                width -= 32;
+            }
+            read(width);
+        }
+    }
+
+    // One archived game. Player 1 is the first player of the archive's fleet header, ships in fleet order.
+    public static final class Game
+    {
+        private final Format format;
+        private boolean player1First;
+        private final int[] shipCell;        // player 1's ships, then player 2's
+        private final boolean[] horizontal;
+        private int[] shots;
+        private int shotCount;
+
+        private Game(Format format)
+        {
+            this.format = format;
+            shipCell = new int[2 * format.ships];
+            horizontal = new boolean[2 * format.ships];
+            shots = new int[64];
+        }
+
+        // decodes the record at the offset, returns its size in bytes
+        private long read(GameArchive archive, long offset)
+        {
+            BitReader in = new BitReader(archive.window(offset), local(offset));
+            player1First = in.read(1) == 1;
+            for (int s = 0; s < shipCell.length; s++)
+            {
+                shipCell[s] = (int) in.read(format.cellBits);
+                horizontal[s] = in.read(1) == 1;
+            }
+            shotCount = (int) in.read(format.countBits);
+            if (shots.length < shotCount)
+            {
+                shots = new int[Math.max(shotCount, shots.length * 2)];
+            }
+            for (int k = 0; k < shotCount; k++)
+            {
+                shots[k] = (int) in.read(format.cellBits);
+            }
+            return (format.fleetBits + format.countBits + (long) shotCount * format.cellBits + 7) / 8;
+        }
+
+        public GameRules getRules()
+        {
+            return format.rules;
+        }
+        // 1 or 2
+        public int getFirstPlayer()
+        {
+            return player1First ? 1 : 2;
+        }
+        public int getShipCount()
+        {
+            return format.ships;
+        }
+        // ship i of player 1 or 2, in fleet order
+        public int getShipRow(int player, int i)
+        {
+            return shipCell[(player - 1) * format.ships + i] / format.rules.getCols();
+        }
+        public int getShipCol(int player, int i)
+        {
+            return shipCell[(player - 1) * format.ships + i] % format.rules.getCols();
+        }
+        public boolean isShipHorizontal(int player, int i)
+        {
+            return horizontal[(player - 1) * format.ships + i];
+        }
+        public int getShipLength(int i)
+        {
+            return format.rules.getFleet().getLength(i);
+        }
+        public int getShotCount()
+        {
+            return shotCount;
+        }
+        // cell (packed) of shot k
+        public int getShot(int k)
+        {
+            return shots[k];
+        }
+        // player (1 or 2) that took shot k, the players take turns
+        public int getShooter(int k)
+        {
+            return (k & 1) == 0 ? getFirstPlayer() : 3 - getFirstPlayer();
+        }
+        // a copy that stays valid after the scan moves on
+        public Game copy()
+        {
+            Game copy = new Game(format);
+            copy.player1First = player1First;
+            System.arraycopy(shipCell, 0, copy.shipCell, 0, shipCell.length);
+            System.arraycopy(horizontal, 0, copy.horizontal, 0, horizontal.length);
+            copy.shots = Arrays.copyOf(shots, shotCount);
+            copy.shotCount = shotCount;
+            return copy;
+        }
+        // The game replayed with human players, in its final state
+        public GameController toController()
+        {
+            Player player1 = new HumanPlayer(format.rules);
+            Player player2 = new HumanPlayer(format.rules);
+            for (int i = 0; i < format.ships; i++)
+            {
+                for (int player = 1; player <= 2; player++)
+                {
+                    Player owner = player == 1 ? player1 : player2;
+                    Ship ship = new Ship(getShipLength(i), getShipRow(player, i), getShipCol(player, i), isShipHorizontal(player, i));
+                    owner.getBoard().placeShip(ship.getStartRow(), ship.getStartCol(), ship.getLength(), ship.isHorizontal());
+                    owner.addShip(ship);
+                }
+            }
+            GameController controller = new GameController(player1, player2);
+            if (!player1First)
+            {
+                controller.switchPlayers();
+            }
+            for (int k = 0; k < shotCount; k++)
+            {
+                controller.playShot(shots[k]);
+            }
+            return controller;
+        }
+    }
+
+    // Appends games to a new archive. add() may be called from several threads, games are numbered in the order
+    // they are added. Nothing is readable as an indexed archive before close().
+    public static final class Writer implements Closeable
+    {
+        private static final int BUFFER_BYTES = 1 << 20;
+
+        private final Format format;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private long[] offsets = new long[1024];
+        private long games;
+        private long position;
+
+        private Writer(Path file, Format format) throws IOException
+        {
+            this.format = format;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            FleetSpec fleet = format.rules.getFleet();
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(format.rules.getRows()).putInt(format.rules.getCols());
+            buffer.putLong(0).putLong(0).putInt(fleet.size());
+            for (int i = 0; i < fleet.size(); i++)
+            {
+                buffer.put((byte) fleet.getLength(i));
+            }
+            buffer.position(format.headerBytes);
+            position = format.headerBytes;
+        }
+
+        // Adds a finished (or abandoned) game: the fleets from the players' ships, the shots in the order they
+        // were taken, the first by player 1 if player1First. The shots must be the ones on the boards.
+        public long add(Player player1, Player player2, boolean player1First, int[] shots, int count)
+        {
+            return append(encode(player1, player2, player1First, shots, count));
+        }
+        // Adds a record made by encode(), returns its game number
+        public long append(byte[] record)
+        {
+            synchronized (this)
+            {
+                try
+                {
+                    if (buffer.remaining() < record.length)
+                    {
+                        flush();
+                    }
+                    if (record.length > buffer.capacity())
+                    {
+                        write(ByteBuffer.wrap(record));
+                    }
+                    else
+                    {
+                        buffer.put(record);
+                    }
+                }
+                catch (IOException e)
+                {
+                    throw new java.io.UncheckedIOException(e);
+                }
+                if (games == offsets.length)
+                {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[(int) games] = position;
+                position += record.length;
+                return games++;
+            }
+        }
+        // Adds a game that kept its history (see GameController.setRecordHistory): the shots come from it
+        public long add(GameController controller)
+        {
+            GameSnapshot state = controller.snapshot();
+            int[] shots = new int[state.getShotCount()];
+            GameSnapshot s = state;
+            for (int k = shots.length - 1; k >= 0; k--, s = s.getParent())
+            {
+                shots[k] = s.getLastShot();
+            }
+            return add(controller.getPlayer1(), controller.getPlayer2(), s.getCurrentPlayer() == 1, shots, shots.length);
+        }
+
+        // The record of a game (same arguments as add) for append(). Touches nothing of the archive, so games can
+        // be encoded on many threads and appended in the order wanted.
+        public byte[] encode(Player player1, Player player2, boolean player1First, int[] shots, int count)
+        {
+            if (count > format.maxShots)
+            {
+                throw new IllegalArgumentException(count + " shots, a game of " + format.rules + " has at most " + format.maxShots);
+            }
+            Board[] boards = {player1.getBoard(), player2.getBoard()};
+            if (count != boards[0].countShots() + boards[1].countShots())
+            {
+                throw new IllegalArgumentException(count + " shots given, the boards have " + (boards[0].countShots() + boards[1].countShots()));
+            }
+            byte[] record = new byte[(int) ((format.fleetBits + format.countBits + (long) count * format.cellBits + 7) / 8)];
+            BitWriter out = new BitWriter(record);
+            out.write(player1First ? 1 : 0, 1);
+            writeFleet(out, player1);
+            writeFleet(out, player2);
+            out.write(count, format.countBits);
+            for (int k = 0; k < count; k++)
+            {
+                // shots alternate, the first player's land on the other board
+                Board target = boards[(k & 1) == 0 == player1First ? 1 : 0];
+                if (shots[k] < 0 || shots[k] >= format.rules.getCells() || !target.isShotCell(shots[k]))
+                {
+                    throw new IllegalArgumentException("shot " + k + " at cell " + shots[k] + " is not on the board it targets");
+                }
+                out.write(shots[k], format.cellBits);
+            }
+            out.finish();
+            return record;
+        }
+        // the player's ships in fleet order (equal lengths in list order)
+        private void writeFleet(BitWriter out, Player player)
+        {
+            List<Ship> ships = player.getShips();
+            FleetSpec fleet = format.rules.getFleet();
+            if (ships.size() != fleet.size())
+            {
+                throw new IllegalArgumentException(ships.size() + " ships, the fleet has " + fleet.size());
+            }
+            boolean[] used = new boolean[ships.size()];
+            int cols = format.rules.getCols();
+            for (int i = 0; i < fleet.size(); i++)
+            {
+                int s = 0;
+                while (s < ships.size() && (used[s] || ships.get(s).getLength() != fleet.getLength(i)))
+                {
+                    s++;
+                }
+                if (s == ships.size())
+                {
+                    throw new IllegalArgumentException("no ship of length " + fleet.getLength(i) + " left for the fleet " + fleet);
+                }
+                used[s] = true;
+                Ship ship = ships.get(s);
+                out.write(ship.getStartRow() * cols + ship.getStartCol(), format.cellBits);
+                out.write(ship.isHorizontal() ? 1 : 0, 1);
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+        private void write(ByteBuffer bytes) throws IOException
+        {
+            while (bytes.hasRemaining())
+            {
+                channel.write(bytes);
+            }
+        }
+
+        public synchronized long size()
+        {
+            return games;
+        }
+
+        // Writes the index and the header, then closes the file
+        @Override
+        public synchronized void close() throws IOException
+        {
+            if (!channel.isOpen())
+            {
+                return;
+            }
+            try
+            {
+                flush();
+                long indexOffset = position;
+                for (int i = 0; i < games; i++)
+                {
+                    if (!buffer.hasRemaining())
+                    {
+                        flush();
+                    }
+                    buffer.putLong(offsets[i]);
+                }
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(16);
+                header.putLong(games).putLong(indexOffset).flip();
+                channel.write(header, GAMES_OFFSET);
+                channel.force(true);
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+    }
+
+    // Bits into a record, least significant bit first
+    private static final class BitWriter
+    {
+        private final byte[] out;
+        private int position;
+        private long bits;
+        private int pending;
+
+        BitWriter(byte[] out)
+        {
+            this.out = out;
+        }
+        void write(long value, int width)
+        {
+            bits |= value << pending;
+            pending += width;
+            while (pending >= 8)
+            {
+                out[position++] = (byte) bits;
+                bits >>>= 8;
+                pending -= 8;
+            }
+        }
+        void finish()
+        {
+            if (pending > 0)
+            {
+                out[position++] = (byte) bits;
+                bits = 0;
+                pending = 0;
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 // Game flow: switch player, and check win
 import java.io.Serializable;
+import java.util.SplittableRandom;
 
 public class GameController implements Serializable 
 {
@@ -7,6 +8,13 @@ public class GameController implements Serializable
     private Player player2;
     private Player currentPlayer;
     private Player opponent;
+    private boolean recordHistory; // off unless asked for, see setRecordHistory
+    private transient GameSnapshot history; // state after the last turn, its parents are the earlier turns
+    private transient MoveJournal journal;  // every shot is appended to it, null if none
+    private long shotSequenceHash = SHOT_HASH_START; // hash of every shot taken so far, in order
+    private long lastShot = Player.NO_SHOT;
+    private static final long SHOT_HASH_START = 0xcbf29ce484222325L; // FNV-1a offset basis
+    private static final long SHOT_HASH_PRIME = 0x100000001b3L;
     public GameController(Player p1, Player p2) 
     {
         player1 = p1;
@@ -14,25 +22,133 @@ public class GameController implements Serializable
         currentPlayer = p1;
         opponent = p2;
     }
+    // Makes the game deterministic: each player gets its own stream split from the game's generator,
+    // player 1 first. Call before setupGame so the fleets are placed from these streams too.
+    public void setRandom(SplittableRandom gameRandom) {
+        player1.setRandom(gameRandom.split());
+        player2.setRandom(gameRandom.split());
+    }
+    public void setSeed(long seed) {
+        setRandom(new SplittableRandom(seed));
+    }
     public void setupGame() {
         player1.placeShipsAutomatically();
         player2.placeShipsAutomatically();
     }
     // return noMove if the player hasn't done turn. 
     // return turnDone if player is finished and gameOver if opponent lost
+    // Nothing is allocated here when history is off, shots are packed cells
     public String takeTurn() {
-        char[][] opponentView = opponent.getBoardForOpponent();
-        int[] move = currentPlayer.chooseShot(opponentView);
-        if (move == null) {
+        Board target = opponent.getBoard();
+        long move = currentPlayer.nextShot(target);
+        if (move == Player.NO_SHOT) {
             return "noMove";
         }
-        opponent.getBoard().shoot(move[0], move[1], opponent.getShips());
-        if (opponent.getBoard().allShipsSunk(opponent.getShips())) {
+        if (playShot(move)) {
+            currentPlayer.onGameOver(opponent, true);
+            opponent.onGameOver(currentPlayer, false);
             return "gameOver";
         }
-        switchPlayers();
         return "turnDone";
     }
+    // Fires the current player's shot and passes the turn unless it won, returns true if it did.
+    // Also how a journal is replayed, which is why the end of the game is announced by takeTurn.
+    boolean playShot(long move) {
+        Board target = opponent.getBoard();
+        if (recordHistory) {
+            history = snapshot().afterShot((int) (move / target.getCols()), (int) (move % target.getCols()));
+        }
+        int result = target.shootCell(move, opponent.getShips());
+        lastShot = move;
+        currentPlayer.onShotResult(target, move, result);
+        opponent.onShotReceived(move, result);
+        boolean byPlayer1 = currentPlayer == player1;
+        shotSequenceHash = nextShotHash(shotSequenceHash, move, byPlayer1);
+        boolean won = target.allShipsSunk();
+        if (!won) {
+            switchPlayers();
+        }
+        if (journal != null) {
+            journal.shot(this, move, byPlayer1);
+            if (won) {
+                journal.commit(); // a finished game is complete on disk
+            }
+        }
+        return won;
+    }
+    // Current state as an immutable snapshot. Captured from the boards the first time, after that every
+    // turn only adds a snapshot that shares its data with the previous one.
+    public GameSnapshot snapshot() {
+        if (history == null) {
+            history = GameSnapshot.capture(this);
+        }
+        return history;
+    }
+    // Takes back the last shot, returns false if there is nothing to take back
+    public boolean undo() {
+        if (history == null || history.getParent() == null) {
+            return false;
+        }
+        restore(history.getParent());
+        return true;
+    }
+    // Puts both players back into the state of a snapshot of this game
+    public void restore(GameSnapshot snapshot) {
+        snapshot.restore(player1, player2);
+        currentPlayer = snapshot.getCurrentPlayer() == 1 ? player1 : player2;
+        opponent = currentPlayer == player1 ? player2 : player1;
+        history = snapshot;
+        shotSequenceHash = hashShots(snapshot);
+        lastShot = snapshot.getParent() != null ? snapshot.getLastShot() : Player.NO_SHOT;
+        if (journal != null) {
+            journal.checkpoint(this);
+        }
+    }
+    // Appends every shot from now on to the journal (see MoveJournal.create), null to stop
+    public void setJournal(MoveJournal journal) {
+        this.journal = journal;
+    }
+    public MoveJournal getJournal() {
+        return journal;
+    }
+    // Keeps a snapshot per turn for undo (GameWindow turns it on). Off by default, so games that never undo
+    // allocate nothing per turn. Sparse boards have no snapshots, it stays off for them.
+    public void setRecordHistory(boolean record) {
+        recordHistory = record && !getRules().isSparse();
+        if (!record) {
+            history = null;
+        }
+    }
+    public boolean isRecordingHistory() {
+        return recordHistory;
+    }
+    // Same seed, same players => same hash. Used to check that a replayed game took the same shots.
+    public long getShotSequenceHash() {
+        return shotSequenceHash;
+    }
+    // cell of the last shot taken (packed), NO_SHOT before the first
+    public long getLastShot() {
+        return lastShot;
+    }
+    private long nextShotHash(long hash, long move, boolean byPlayer1) {
+        return (hash ^ (byPlayer1 ? move : ~move)) * SHOT_HASH_PRIME;
+    }
+    // hash of the shots that lead to a snapshot, from the start of its history
+    private long hashShots(GameSnapshot snapshot) {
+        GameSnapshot[] path = new GameSnapshot[snapshot.getShotCount() + 1];
+        int n = 0;
+        for (GameSnapshot s = snapshot; s.getParent() != null && n < path.length; s = s.getParent()) {
+            path[n++] = s;
+        }
+        long hash = SHOT_HASH_START;
+        for (int i = n - 1; i >= 0; i--) {
+            hash = nextShotHash(hash, path[i].getLastShot(), path[i].getParent().getCurrentPlayer() == 1);
+        }
+        return hash;
+    }
+    public GameRules getRules() {
+        return player1.getRules();
+    }
     public Player getCurrentPlayer() {
         return currentPlayer;
     }
@@ -54,5 +170,8 @@ public class GameController implements Serializable
         player1 = p1;
         player2 = p2;
         currentPlayer = p1; 
+        history = null;
+        shotSequenceHash = SHOT_HASH_START;
+        lastShot = Player.NO_SHOT;
     }
 }
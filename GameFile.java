@@ -0,0 +1,411 @@
+// Reads and writes .bsg save files.
+// Version 2 is binary, big endian: magic, version, payload length and CRC32 of the payload (ints), then the payload:
+// rows, cols (ints), flags (byte, 1 = sparse board), player to move (byte, 1 or 2), fleet size (short) and one
+// byte per ship length, then per player: ship count (short), per ship row, col (ints) and length | horizontal << 7
+// (byte), then the shot information in whichever of two encodings is smaller:
+//   grid  - 2 bits per cell (0 not shot, 1 miss, 2 hit, 3 destroyed), four cells per byte, row by row
+//   cells - shot count (int), per shot row, col (ints) and state (byte, as above), for sparse boards
+// The ship grid is not stored, it follows from the ships. A file is read with one channel read and checked
+// against its length and CRC before anything is built, so a damaged file is reported instead of loaded.
+// Version 1 files (the old text format, starting with BOARD_SIZE:, CURRENT_PLAYER: or PLAYER_) are still read.
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+public final class GameFile
+{
+    private static final int MAGIC = 0x42534732; // "BSG2"
+    public static final int VERSION = 2;
+    private static final int HEADER = 16;
+    private static final byte GRID = 0;
+    private static final byte CELLS = 1;
+    private static final byte SPARSE = 1;
+    private static final int MAX_FILE_BYTES = Integer.MAX_VALUE - 64;
+    private static final char[] INFO = {' ', 'M', 'H', 'D'}; // by state
+
+    private GameFile()
+    {
+    }
+
+    // Writes the game in the current format
+    public static void save(GameController controller, Path file) throws IOException
+    {
+        ByteBuffer buffer = encode(controller);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    // The state of the game, for encode(Object) on another thread: the game's current GameSnapshot when it keeps a
+    // history (no copy at all, snapshots are immutable), a fresh capture of the boards otherwise, or the encoded file
+    // for sparse boards (costs the shots, not the area)
+    public static Object capture(GameController controller)
+    {
+        if (controller.getRules().isSparse())
+        {
+            return encode(controller);
+        }
+        return controller.isRecordingHistory() ? controller.snapshot() : GameSnapshot.capture(controller);
+    }
+    // The whole file of a state taken by capture()
+    public static ByteBuffer encode(Object state)
+    {
+        return state instanceof GameSnapshot ? encode(((GameSnapshot) state).toController()) : ((ByteBuffer) state).duplicate();
+    }
+
+    // The whole file (header and payload) ready to be written
+    public static ByteBuffer encode(GameController controller)
+    {
+        GameRules rules = controller.getRules();
+        FleetSpec fleet = rules.getFleet();
+        Board[] boards = {controller.getPlayer1().getBoard(), controller.getPlayer2().getBoard()};
+        long size = HEADER + 4 + 4 + 1 + 1 + 2 + fleet.size();
+        byte[] encodings = new byte[2];
+        for (int p = 0; p < 2; p++)
+        {
+            long ships = 2 + 9L * (p == 0 ? controller.getPlayer1() : controller.getPlayer2()).getShips().size();
+            long grid = (rules.getCells() + 3) / 4;
+            long cells = 4 + 9L * boards[p].countShots();
+            encodings[p] = grid <= cells && !rules.isSparse() ? GRID : CELLS;
+            grid = encodings[p] == GRID ? grid : cells;
+            size += ships + 1 + grid;
+        }
+        if (size > MAX_FILE_BYTES)
+        {
+            throw new IllegalStateException("game too large to save: " + size + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.position(HEADER);
+        buffer.putInt(rules.getRows());
+        buffer.putInt(rules.getCols());
+        buffer.put(rules.isSparse() ? SPARSE : 0);
+        buffer.put((byte) (controller.getCurrentPlayer() == controller.getPlayer1() ? 1 : 2));
+        buffer.putShort((short) fleet.size());
+        for (int i = 0; i < fleet.size(); i++)
+        {
+            buffer.put((byte) fleet.getLength(i));
+        }
+        writePlayer(buffer, controller.getPlayer1(), encodings[0]);
+        writePlayer(buffer, controller.getPlayer2(), encodings[1]);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER, buffer.position() - HEADER);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, buffer.position() - HEADER);
+        buffer.putInt(12, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+    private static void writePlayer(ByteBuffer buffer, Player player, byte encoding)
+    {
+        List<Ship> ships = player.getShips();
+        buffer.putShort((short) ships.size());
+        for (Ship ship : ships)
+        {
+            buffer.putInt(ship.getStartRow());
+            buffer.putInt(ship.getStartCol());
+            buffer.put((byte) (ship.getLength() | (ship.isHorizontal() ? 0x80 : 0)));
+        }
+        Board board = player.getBoard();
+        buffer.put(encoding);
+        if (encoding == GRID)
+        {
+            int start = buffer.position();
+            int cols = board.getCols();
+            buffer.position(start + (int) ((board.getRules().getCells() + 3) / 4)); // allocate() zeroed it
+            board.forEachShot((r, c) -> {
+                int cell = r * cols + c;
+                int at = start + (cell >>> 2);
+                buffer.put(at, (byte) (buffer.get(at) | state(board.getInfoCoord(r, c)) << ((cell & 3) << 1)));
+            });
+        }
+        else
+        {
+            buffer.putInt(board.countShots());
+            board.forEachShot((r, c) -> {
+                buffer.putInt(r);
+                buffer.putInt(c);
+                buffer.put((byte) state(board.getInfoCoord(r, c)));
+            });
+        }
+    }
+    private static int state(char info)
+    {
+        return info == 'M' ? 1 : info == 'H' ? 2 : info == 'D' ? 3 : 0;
+    }
+
+    // Reads a save file of either version. Player 1 is a human, player 2 comes from the factory for the
+    // rules of the file. IOException if the file cannot be read or is damaged.
+    public static GameController load(Path file, Function<GameRules, Player> player2Factory) throws IOException
+    {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > MAX_FILE_BYTES)
+            {
+                throw new IOException(file.getFileName() + " is too large for a save file");
+            }
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+            {
+                // one pass over the file
+            }
+            buffer.flip();
+        }
+        if (buffer.remaining() >= 4 && buffer.getInt(0) == MAGIC)
+        {
+            return decode(buffer, player2Factory);
+        }
+        return readText(new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8), player2Factory);
+    }
+
+    // Builds the game from a whole version 2 file
+    public static GameController decode(ByteBuffer buffer, Function<GameRules, Player> player2Factory) throws IOException
+    {
+        if (buffer.remaining() < HEADER || buffer.getInt(buffer.position()) != MAGIC)
+        {
+            throw new IOException("not a save file");
+        }
+        int version = buffer.getInt(buffer.position() + 4);
+        if (version != VERSION)
+        {
+            throw new IOException("unsupported save file version " + version);
+        }
+        int length = buffer.getInt(buffer.position() + 8);
+        if (length != buffer.remaining() - HEADER)
+        {
+            throw new IOException("save file damaged: " + (buffer.remaining() - HEADER) + " bytes of data instead of " + length);
+        }
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(buffer.position() + HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != buffer.getInt(buffer.position() + 12))
+        {
+            throw new IOException("save file damaged: checksum mismatch");
+        }
+        try
+        {
+            int rows = payload.getInt();
+            int cols = payload.getInt();
+            boolean sparse = (payload.get() & SPARSE) != 0;
+            int current = payload.get();
+            int[] lengths = new int[payload.getShort()];
+            for (int i = 0; i < lengths.length; i++)
+            {
+                lengths[i] = payload.get();
+            }
+            GameRules rules = new GameRules(rows, cols, standardNames(new FleetSpec(lengths)), sparse);
+            Player p1 = new HumanPlayer(rules);
+            Player p2 = player2Factory.apply(rules);
+            readPlayer(payload, p1);
+            readPlayer(payload, p2);
+            if (payload.hasRemaining() || (current != 1 && current != 2))
+            {
+                throw new IOException("save file damaged: inconsistent data");
+            }
+            return controller(p1, p2, current);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e)
+        {
+            throw new IOException("save file damaged: " + (e.getMessage() != null ? e.getMessage() : "truncated data"), e);
+        }
+    }
+    private static void readPlayer(ByteBuffer payload, Player player) throws IOException
+    {
+        Board board = player.getBoard();
+        int count = payload.getShort();
+        for (int i = 0; i < count; i++)
+        {
+            int row = payload.getInt();
+            int col = payload.getInt();
+            int packed = payload.get() & 0xFF;
+            int length = packed & 0x7F;
+            boolean horizontal = (packed & 0x80) != 0;
+            // placed as read so an overlap shows; restoreShips below rebuilds the index from the list anyway
+            if (length < 1 || !board.canPlaceShip(row, col, length, horizontal))
+            {
+                throw new IOException("corrupt game file: ship outside the board or overlapping another");
+            }
+            board.placeShip(row, col, length, horizontal);
+            player.addShip(new Ship(length, row, col, horizontal));
+        }
+        byte encoding = payload.get();
+        if (encoding == GRID)
+        {
+            int cols = board.getCols();
+            long cells = board.getRules().getCells();
+            int start = payload.position();
+            long bytes = (cells + 3) / 4;
+            if (payload.remaining() < bytes)
+            {
+                throw new IOException("corrupt game file: shot grid truncated");
+            }
+            if (cells % 4 != 0 && (payload.get(start + (int) bytes - 1) & 0xFF) >>> (2 * (cells % 4)) != 0)
+            {
+                throw new IOException("corrupt game file: shot past the last cell");
+            }
+            for (int at = 0; at < bytes; at++)
+            {
+                int bits = payload.get(start + at) & 0xFF;
+                for (int cell = at << 2; bits != 0; bits >>>= 2, cell++)
+                {
+                    if ((bits & 3) != 0)
+                    {
+                        board.setInfoGrid(cell / cols, cell % cols, INFO[bits & 3]);
+                    }
+                }
+            }
+            payload.position(start + (int) bytes);
+        }
+        else if (encoding == CELLS)
+        {
+            int shots = payload.getInt();
+            for (int i = 0; i < shots; i++)
+            {
+                int r = payload.getInt();
+                int c = payload.getInt();
+                int state = payload.get();
+                if (!board.inBounds(r, c) || state < 1 || state > 3)
+                {
+                    throw new IOException("save file damaged: bad shot");
+                }
+                board.setInfoGrid(r, c, INFO[state]);
+            }
+        }
+        else
+        {
+            throw new IOException("save file damaged: unknown encoding " + encoding);
+        }
+        board.restoreShips(player.getShips()); // sets the ship cells and hit counts
+    }
+
+    // Version 1: the text format
+    private static GameController readText(String text, Function<GameRules, Player> player2Factory) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        // older files have no size or fleet, they are 10x10 standard games
+        int rows = Board.SIZE;
+        int cols = Board.SIZE;
+        FleetSpec fleet = FleetSpec.STANDARD;
+        Player p1 = null;
+        Player p2 = null;
+        String line;
+        int currentPlayerNum = 1;
+        try
+        {
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.startsWith("BOARD_SIZE:"))
+                {
+                    String[] parts = line.substring("BOARD_SIZE:".length()).split(",");
+                    rows = Integer.parseInt(parts[0]);
+                    cols = Integer.parseInt(parts[1]);
+                }
+                else if (line.startsWith("FLEET:"))
+                {
+                    String[] parts = line.substring("FLEET:".length()).split(",");
+                    int[] lengths = new int[parts.length];
+                    for (int i = 0; i < parts.length; i++)
+                    {
+                        lengths[i] = Integer.parseInt(parts[i]);
+                    }
+                    fleet = standardNames(new FleetSpec(lengths));
+                }
+                if (p1 == null && line.startsWith("PLAYER_"))
+                {
+                    GameRules loadedRules = new GameRules(rows, cols, fleet);
+                    p1 = new HumanPlayer(loadedRules);
+                    p2 = player2Factory.apply(loadedRules);
+                }
+                if (line.startsWith("CURRENT_PLAYER:"))
+                {
+                    currentPlayerNum = Integer.parseInt(line.substring("CURRENT_PLAYER:".length()));
+                }
+                else if (line.equals("PLAYER_1_START"))
+                {
+                    readTextPlayer(reader, p1);
+                }
+                else if (line.equals("PLAYER_2_START"))
+                {
+                    readTextPlayer(reader, p2);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("save file damaged: " + e.getMessage(), e);
+        }
+        if (p1 == null)
+        {
+            throw new IOException("no player data in the save file");
+        }
+        return controller(p1, p2, currentPlayerNum);
+    }
+    private static void readTextPlayer(BufferedReader reader, Player player) throws IOException
+    {
+        String line = reader.readLine();
+        int shipsCount = Integer.parseInt(line.substring("SHIPS_COUNT:".length()));
+        for (int i = 0; i < shipsCount; i++)
+        {
+            line = reader.readLine();
+            String[] parts = line.substring("SHIP:".length()).split(",");
+            int length = Integer.parseInt(parts[0]);
+            int row = Integer.parseInt(parts[1]);
+            int col = Integer.parseInt(parts[2]);
+            boolean horizontal = Boolean.parseBoolean(parts[3]);
+            player.addShip(new Ship(length, row, col, horizontal)); // hits are counted from the info grid
+        }
+        Board board = player.getBoard();
+        // the ship grid follows from the ships, its lines are skipped
+        reader.readLine();
+        for (int r = 0; r < board.getRows(); r++)
+        {
+            reader.readLine();
+        }
+        reader.readLine();
+        for (int r = 0; r < board.getRows(); r++)
+        {
+            line = reader.readLine();
+            for (int c = 0; c < board.getCols(); c++)
+            {
+                if (line.charAt(c) != ' ')
+                {
+                    board.setInfoGrid(r, c, line.charAt(c));
+                }
+            }
+        }
+        board.restoreShips(player.getShips());
+        reader.readLine(); // PLAYER_n_END
+    }
+
+    private static FleetSpec standardNames(FleetSpec fleet)
+    {
+        return fleet.equals(FleetSpec.STANDARD) ? FleetSpec.STANDARD : fleet; // keeps the ship names
+    }
+    private static GameController controller(Player p1, Player p2, int current)
+    {
+        GameController controller = new GameController(p1, p2);
+        while (controller.getCurrentPlayer() != (current == 1 ? p1 : p2))
+        {
+            controller.switchPlayers();
+        }
+        return controller;
+    }
+}
@@ -0,0 +1,85 @@
+// Game configuration: board dimensions and the fleet each player places.
+// Every board, player, AI and screen sizes itself from these rules instead of fixed 10x10 constants.
+// Boards above DENSE_CELL_LIMIT cells (or created with sparse = true) use chunked storage.
+// Rules whose fleet cannot be placed are rejected (see PlacementEngine.checkFits).
+
+import java.io.Serializable;
+
+public final class GameRules implements Serializable
+{
+    public static final GameRules STANDARD = new GameRules(Board.SIZE, Board.SIZE, FleetSpec.STANDARD);
+    public static final long DENSE_CELL_LIMIT = 1L << 22; // 2048 x 2048
+
+    private final int rows;
+    private final int cols;
+    private final FleetSpec fleet;
+    private final boolean sparse;
+
+    public GameRules(int rows, int cols, FleetSpec fleet)
+    {
+        this(rows, cols, fleet, (long) rows * cols > DENSE_CELL_LIMIT);
+    }
+    public GameRules(int rows, int cols, FleetSpec fleet, boolean sparse)
+    {
+        if (rows < 1 || cols < 1)
+        {
+            throw new IllegalArgumentException("board must have at least one row and column: " + rows + "x" + cols);
+        }
+        if (!sparse && (long) rows * cols > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("board too large for dense storage: " + rows + "x" + cols);
+        }
+        if (fleet.getMaxLength() > Math.max(rows, cols))
+        {
+            throw new IllegalArgumentException("ship of length " + fleet.getMaxLength() + " does not fit on " + rows + "x" + cols);
+        }
+        if (fleet.getTotalCells() > (long) rows * cols)
+        {
+            throw new IllegalArgumentException("fleet " + fleet + " needs more cells than the board has");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.fleet = fleet;
+        this.sparse = sparse;
+        PlacementEngine.checkFits(this);
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+    public int getCols()
+    {
+        return cols;
+    }
+    public long getCells()
+    {
+        return (long) rows * cols;
+    }
+    // true if boards use chunked storage, which has no char grid views
+    public boolean isSparse()
+    {
+        return sparse;
+    }
+    public FleetSpec getFleet()
+    {
+        return fleet;
+    }
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof GameRules))
+        {
+            return false;
+        }
+        GameRules other = (GameRules) o;
+        return rows == other.rows && cols == other.cols && fleet.equals(other.fleet) && sparse == other.sparse;
+    }
+    public int hashCode()
+    {
+        return (rows * 31 + cols) * 31 + fleet.hashCode();
+    }
+    public String toString()
+    {
+        return rows + "x" + cols + " " + fleet;
+    }
+}
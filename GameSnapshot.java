@@ -0,0 +1,225 @@
+// Immutable state of a whole game: both fleets, the shots on both boards and whose turn it is.
+// afterShot() returns a new snapshot that shares everything but the pages that changed (see PersistentBits),
+// so keeping one snapshot per turn is cheap. The parent link gives undo, and any snapshot can be branched
+// by a lookahead AI without touching the live game. Only dense boards can be captured.
+
+public final class GameSnapshot
+{
+    // ship placement of one board, shared by every snapshot of a game
+    private static final class Layout
+    {
+        final int[] row, col, length;
+        final boolean[] horizontal;
+        final short[] shipAt; // cell -> ship id or -1
+
+        Layout(Board board)
+        {
+            int count = board.getShipCount();
+            row = new int[count];
+            col = new int[count];
+            length = new int[count];
+            horizontal = new boolean[count];
+            shipAt = new short[board.getRows() * board.getCols()];
+            java.util.Arrays.fill(shipAt, (short) -1);
+            for (int id = 0; id < count; id++)
+            {
+                row[id] = board.getShipRow(id);
+                col[id] = board.getShipCol(id);
+                length[id] = board.getShipLength(id);
+                horizontal[id] = board.isShipHorizontal(id);
+                for (int i = 0; i < length[id]; i++)
+                {
+                    shipAt[cellOf(id, i, board.getCols())] = (short) id;
+                }
+            }
+        }
+        int cellOf(int id, int i, int cols)
+        {
+            return horizontal[id] ? row[id] * cols + col[id] + i : (row[id] + i) * cols + col[id];
+        }
+    }
+
+    // shots on one board
+    private static final class Side
+    {
+        final Layout layout;
+        final PersistentBits hit, miss, destroyed;
+        final int remainingShips;
+
+        Side(Layout layout, PersistentBits hit, PersistentBits miss, PersistentBits destroyed, int remainingShips)
+        {
+            this.layout = layout;
+            this.hit = hit;
+            this.miss = miss;
+            this.destroyed = destroyed;
+            this.remainingShips = remainingShips;
+        }
+    }
+
+    private final GameRules rules;
+    private final Side[] sides;      // 0 = player 1's board, 1 = player 2's board
+    private final int current;       // 0 = player 1 to move, 1 = player 2
+    private final GameSnapshot parent;
+    private final int lastShot;      // cell shot to reach this snapshot, -1 for a captured one
+    private final int shotCount;
+
+    private GameSnapshot(GameRules rules, Side[] sides, int current, GameSnapshot parent, int lastShot, int shotCount)
+    {
+        this.rules = rules;
+        this.sides = sides;
+        this.current = current;
+        this.parent = parent;
+        this.lastShot = lastShot;
+        this.shotCount = shotCount;
+    }
+
+    // copies the live state of a game, costs one pass over both boards
+    public static GameSnapshot capture(GameController controller)
+    {
+        Side[] sides = {capture(controller.getPlayer1().getBoard()), capture(controller.getPlayer2().getBoard())};
+        int current = controller.getCurrentPlayer() == controller.getPlayer1() ? 0 : 1;
+        return new GameSnapshot(controller.getRules(), sides, current, null, -1, 0);
+    }
+    private static Side capture(Board board)
+    {
+        Ocean ocean = board.getOcean();
+        if (ocean.densePlane(Ocean.HIT) == null)
+        {
+            throw new UnsupportedOperationException("snapshots need a dense board");
+        }
+        return new Side(new Layout(board),
+                PersistentBits.of(ocean.densePlane(Ocean.HIT)),
+                PersistentBits.of(ocean.densePlane(Ocean.MISS)),
+                PersistentBits.of(ocean.densePlane(Ocean.DESTROYED)),
+                board.getFleetStatus().getRemainingShips());
+    }
+
+    // The player to move shoots at (r, c). Same rules as Board.shoot and GameController.takeTurn:
+    // the turn passes to the other player unless the shot sinks the last ship.
+    public GameSnapshot afterShot(int r, int c)
+    {
+        int cols = rules.getCols();
+        int cell = r * cols + c;
+        int target = 1 - current;
+        Side side = sides[target];
+        Side[] newSides = sides.clone();
+        if (!side.hit.get(cell) && !side.miss.get(cell))
+        {
+            int id = side.layout.shipAt[cell];
+            if (id < 0)
+            {
+                newSides[target] = new Side(side.layout, side.hit, side.miss.set(cell), side.destroyed, side.remainingShips);
+            }
+            else
+            {
+                PersistentBits hit = side.hit.set(cell);
+                PersistentBits destroyed = side.destroyed;
+                int remaining = side.remainingShips;
+                boolean sunk = true;
+                for (int i = 0; i < side.layout.length[id] && sunk; i++)
+                {
+                    sunk = hit.get(side.layout.cellOf(id, i, cols));
+                }
+                if (sunk)
+                {
+                    for (int i = 0; i < side.layout.length[id]; i++)
+                    {
+                        destroyed = destroyed.set(side.layout.cellOf(id, i, cols));
+                    }
+                    remaining--;
+                }
+                newSides[target] = new Side(side.layout, hit, side.miss, destroyed, remaining);
+            }
+        }
+        int next = newSides[target].remainingShips == 0 ? current : target;
+        return new GameSnapshot(rules, newSides, next, this, cell, shotCount + 1);
+    }
+
+    // Writes this state back into the players of a game (their ship lists must match the captured fleets)
+    public void restore(Player player1, Player player2)
+    {
+        restore(sides[0], player1);
+        restore(sides[1], player2);
+    }
+    private void restore(Side side, Player player)
+    {
+        int words = (rules.getRows() * rules.getCols() + 63) / 64;
+        long[] hit = new long[words];
+        long[] miss = new long[words];
+        long[] destroyed = new long[words];
+        side.hit.copyTo(hit);
+        side.miss.copyTo(miss);
+        side.destroyed.copyTo(destroyed);
+        player.getBoard().restoreShots(hit, miss, destroyed, player.getShips());
+    }
+
+    // A detached game in this state, with human players and no history. For work off the game thread, like
+    // saving the snapshot while the game goes on.
+    public GameController toController()
+    {
+        Player player1 = new HumanPlayer(rules);
+        Player player2 = new HumanPlayer(rules);
+        addShips(sides[0].layout, player1);
+        addShips(sides[1].layout, player2);
+        restore(player1, player2);
+        GameController controller = new GameController(player1, player2);
+        if (current == 1)
+        {
+            controller.switchPlayers();
+        }
+        return controller;
+    }
+    private static void addShips(Layout layout, Player player)
+    {
+        for (int id = 0; id < layout.length.length; id++)
+        {
+            player.addShip(new Ship(layout.length[id], layout.row[id], layout.col[id], layout.horizontal[id]));
+        }
+    }
+
+    public GameRules getRules()
+    {
+        return rules;
+    }
+    // snapshot before the last shot, null for the first one
+    public GameSnapshot getParent()
+    {
+        return parent;
+    }
+    // 1 if player 1 is to move, 2 for player 2
+    public int getCurrentPlayer()
+    {
+        return current + 1;
+    }
+    public int getLastShot()
+    {
+        return lastShot;
+    }
+    public int getShotCount()
+    {
+        return shotCount;
+    }
+    public boolean isGameOver()
+    {
+        return sides[0].remainingShips == 0 || sides[1].remainingShips == 0;
+    }
+    // ' ', 'H', 'M' or 'D' on the board of player 1 or 2, as the opponent sees it
+    public char getInfo(int player, int r, int c)
+    {
+        Side side = sides[player - 1];
+        int cell = r * rules.getCols() + c;
+        if (side.destroyed.get(cell))
+        {
+            return 'D';
+        }
+        if (side.hit.get(cell))
+        {
+            return 'H';
+        }
+        return side.miss.get(cell) ? 'M' : ' ';
+    }
+    public int getRemainingShips(int player)
+    {
+        return sides[player - 1].remainingShips;
+    }
+}
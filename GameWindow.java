@@ -7,17 +7,22 @@ import java.util.*;
 import java.io.*;
 
 public class GameWindow extends JFrame {
+    private static final int COMPUTER_TURN_MILLIS = 1500; // pacing of the computer's turn, also its thinking time
     private GameController controller;
     private BoardPanel myBoardPanel;      // Current player's ship board 
     private BoardPanel opponentBoardPanel; // Guess board
     private JLabel statusLabel;
     private JLabel shipsInfoLabel;
     private JButton switchButton;
+    private JButton undoButton;
     private JPanel boardsPanel;            // Reference to boards panel for overlay
     private JLabel myBoardLabel;
     private JLabel opponentBoardLabel;
+    private JButton saveButton;
+    private final AutosaveService autosave = AutosaveService.createDefault(); // written after every turn, off the EDT
     public GameWindow(GameController controller) {
         this.controller = controller;
+        controller.setRecordHistory(true); // for the undo button
         setTitle("Battleship Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1200, 700);
@@ -60,12 +65,42 @@ public class GameWindow extends JFrame {
         ButtonPanel buttonPanel = new ButtonPanel(
                 e -> goHome(),
                 e -> restartGame(),
-                e -> saveGame()
+                e -> saveGame(),
+                e -> undoTurn()
         );
         this.switchButton = buttonPanel.newGameButton;
+        this.undoButton = buttonPanel.undoButton;
+        this.saveButton = buttonPanel.saveButton;
         add(buttonPanel, BorderLayout.SOUTH);
         setLocationRelativeTo(null);
         updateStatus();
+        // every shot goes to a journal, a crashed game can be loaded from it; written off the EDT too
+        if (controller.getJournal() == null) {
+            controller.setJournal(MoveJournal.createDefault(controller));
+        }
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                MoveJournal journal = controller.getJournal();
+                closeJournal();
+                // the process exits next, give the last journal batch and autosave a moment
+                if (journal != null) {
+                    journal.flush(2000);
+                }
+                autosave.flush(2000);
+            }
+        });
+    }
+
+    @Override
+    public void dispose() {
+        closeJournal();
+        super.dispose();
+    }
+    private void closeJournal() {
+        if (controller.getJournal() != null) {
+            controller.getJournal().close();
+            controller.setJournal(null);
+        }
     }
 
     //go back to home screen and discard all current game information
@@ -74,7 +109,7 @@ public class GameWindow extends JFrame {
         new StartScreen();
     }
 
-    // save game to .bsg file (including board state and also player turn)
+    // save game to .bsg file (including board state and also player turn), see GameFile for the format
     private void saveGame() {
         try {
             JFileChooser fileChooser = new JFileChooser();
@@ -87,65 +122,68 @@ public class GameWindow extends JFrame {
                 if (!filePath.endsWith(".bsg")) {
                     filePath += ".bsg";
                 }
-                PrintWriter writer = new PrintWriter(new FileWriter(filePath));
-                // Save current player
-                int currentPlayerNum = (controller.getCurrentPlayer() == controller.getPlayer1()) ? 1 : 2;
-                writer.println("CURRENT_PLAYER:" + currentPlayerNum);
-                savePlayerState(writer, controller.getPlayer1(), 1);
-                savePlayerState(writer, controller.getPlayer2(), 2);
-                writer.close();
-                JOptionPane.showMessageDialog(this, "Game saved successfully!");
+                // written on the autosave thread, the dialog comes when the file is complete
+                new AutosaveService(new File(filePath).toPath()).request(controller).whenComplete((path, error) ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (error == null) {
+                            JOptionPane.showMessageDialog(this, "Game saved successfully!");
+                        } else {
+                            Throwable cause = error instanceof java.util.concurrent.CompletionException && error.getCause() != null ? error.getCause() : error;
+                            JOptionPane.showMessageDialog(this, "Error saving game: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                        }
+                    }));
             }
-        } catch (IOException e) {
+        } catch (RuntimeException e) {
             JOptionPane.showMessageDialog(this, "Error saving game: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
+
+    // saves the game to the autosave file in the background, the save button tells how long that takes
+    private void autosave() {
+        autosave.request(controller).thenRun(() -> SwingUtilities.invokeLater(() -> {
+            LatencyStats latency = autosave.getSaveLatency();
+            saveButton.setToolTipText(String.format("Autosaved to %s (%d saves, p50 %.1f ms, p99 %.1f ms)", autosave.getFile(),
+                    autosave.getSaves(), latency.getPercentileNanos(0.5) / 1e6, latency.getPercentileNanos(0.99) / 1e6));
+        }));
+    }
     
-    //helper function to save player information like ship counts and stuff
-    private void savePlayerState(PrintWriter writer, Player player, int playerNum) {
-        writer.println("PLAYER_" + playerNum + "_START");
-        // Save ships
-        writer.println("SHIPS_COUNT:" + player.getShips().size());
-        for (Ship ship : player.getShips()) {
-            writer.println("SHIP:" + ship.getLength() + "," + ship.getStartRow() + "," + ship.getStartCol() + "," + ship.isHorizontal() + "," + ship.getHits());
+    // take back the last shot (against the computer also its reply, so it is the human's turn again)
+    private void undoTurn() {
+        boolean vsComputer = (controller.getPlayer1() instanceof ComputerPlayer || controller.getPlayer2() instanceof ComputerPlayer);
+        if (!controller.undo()) {
+            JOptionPane.showMessageDialog(this, "Nothing to undo.");
+            return;
         }
-        // Save shipGrid
-        writer.println("SHIPGRID_START");
-        char[][] shipGrid = player.getBoard().getShipGrid();
-        for (int r = 0; r < 10; r++) {
-            StringBuilder row = new StringBuilder();
-            for (int c = 0; c < 10; c++) {
-                row.append(shipGrid[r][c]);
-            }
-            writer.println(row.toString());
+        while (vsComputer && controller.getCurrentPlayer() instanceof ComputerPlayer && controller.undo()) {
+            // keep going until the human is to move
         }
-        // Save infoGrid
-        writer.println("INFOGRID_START");
-        char[][] infoGrid = player.getBoard().getInfoGrid();
-        for (int r = 0; r < 10; r++) {
-            StringBuilder row = new StringBuilder();
-            for (int c = 0; c < 10; c++) {
-                row.append(infoGrid[r][c]);
-            }
-            writer.println(row.toString());
+        autosave();
+        myBoardPanel.updateBoard();
+        opponentBoardPanel.updateBoard();
+        opponentBoardPanel.setEnabled(true);
+        updateStatus();
+        if (!vsComputer) {
+            showSwitchPlayerScreen();
         }
-        writer.println("PLAYER_" + playerNum + "_END");
     }
-    
 
-    
     //restart game
     private void restartGame() {
     //check if game against computer
     boolean wasVsComputer = (controller.getPlayer2() instanceof ComputerPlayer);
+    GameRules rules = controller.getRules();
     this.dispose();
     // Create new players
-    Player newPlayer1 = new HumanPlayer();
-    Player newPlayer2 = wasVsComputer ? new ComputerPlayer() : new HumanPlayer();
+    Player newPlayer1 = new HumanPlayer(rules);
+    // same difficulty as the game before
+    String difficulty = controller.getPlayer2() instanceof StrategyPlayer ? ((StrategyPlayer) controller.getPlayer2()).getName() : StrategyRegistry.DEFAULT;
+    PlacementPrior prior = wasVsComputer ? ((ComputerPlayer) controller.getPlayer2()).getPlacementPrior() : null;
+    String profile = prior != null ? prior.getProfile() : PlacementPrior.defaultProfile();
+    Player newPlayer2 = wasVsComputer ? StrategyRegistry.createPlayer(difficulty, rules, profile) : new HumanPlayer(rules);
     GameController newController = new GameController(newPlayer1, newPlayer2);
     
     // ship placement for player 1 (both computer and human)
-    new ShipPlacementScreen(true, () -> {
+    new ShipPlacementScreen(rules, true, () -> {
         for (Window window : Window.getWindows()) {
             if (window instanceof ShipPlacementScreen && window.isVisible()) {
                 ShipPlacementScreen screen = (ShipPlacementScreen) window;
@@ -162,7 +200,7 @@ public class GameWindow extends JFrame {
             newPlayer2.placeShipsAutomatically();
             startNewGameWindow(newController);
         } else {
-            new ShipPlacementScreen(false, () -> {
+            new ShipPlacementScreen(rules, false, () -> {
                 for (Window window : Window.getWindows()) {
                     if (window instanceof ShipPlacementScreen && window.isVisible()) {
                         ShipPlacementScreen screen = (ShipPlacementScreen) window;
@@ -213,7 +251,7 @@ public class GameWindow extends JFrame {
             opponentBoardLabel.setText("Opponent Board");
         }
         // Check  game end like win or lose
-        if (opponent.getBoard().allShipsSunk(opponent.getShips())) {
+        if (opponent.getBoard().allShipsSunk()) {
             if (current instanceof ComputerPlayer) {
                 statusLabel.setText("Game Over - Computer Wins! ");
             } else {
@@ -259,41 +297,39 @@ public class GameWindow extends JFrame {
 
     //present information of ships like length and and number
     private String getShipsInfo(Player player) {
-        Map<Integer, Integer> shipCounts = new HashMap<>();
-        for (Ship s : player.getShips()) {
-            int length = s.getLength();
-            shipCounts.put(length, shipCounts.getOrDefault(length, 0) + 1);
-        }
-        
-        java.util.List<String> infoParts = new ArrayList<>();
-        for (Map.Entry<Integer, Integer> entry : shipCounts.entrySet()) {
-            infoParts.add(entry.getValue() + " ship of " + entry.getKey());
+        FleetStatus fleet = player.getFleetStatus();
+        StringBuilder info = new StringBuilder();
+        for (int length = 1; length <= fleet.getMaxLength(); length++) {
+            if (fleet.getPlaced(length) > 0) {
+                if (info.length() > 0) {
+                    info.append(", ");
+                }
+                info.append(fleet.getPlaced(length)).append(" ship of ").append(length);
+            }
         }
-        return String.join(", ", infoParts);
+        return info.toString();
     }
 
     private int countRemainingShips(Player player) {
-        int count = 0;
-        for (Ship s : player.getShips()) {
-            if (!s.isSunk()) {
-                count += 1;
-            }
-        }
-        return count;
+        return player.getFleetStatus().getRemainingShips();
     }
 
     private class BoardPanel extends JPanel {
-        private CellButton[][] buttons = new CellButton[10][10];
+        private CellButton[][] buttons;
+        private int rows, cols;
         private GameController controller;
         private boolean isMyBoard; // true = player's ship board, false = opponent guess board
         public BoardPanel(GameController controller, boolean isMyBoard) {
             this.controller = controller;
             this.isMyBoard = isMyBoard;
-            setLayout(new GridLayout(10, 10));
+            rows = controller.getRules().getRows();
+            cols = controller.getRules().getCols();
+            buttons = new CellButton[rows][cols];
+            setLayout(new GridLayout(rows, cols));
             setBorder(BorderFactory.createLineBorder(Color.BLACK, 2));
             setBackground(Color.WHITE);
-            for (int r = 0; r < 10; r++) {
-                for (int c = 0; c < 10; c++) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
                     CellButton btn = new CellButton();
                     btn.setPreferredSize(new Dimension(50, 50));
                     btn.setBackground(Color.WHITE);
@@ -320,17 +356,17 @@ public class GameWindow extends JFrame {
 
             if (current instanceof HumanPlayer) {
                 // if cell already guessed just do nothing
-                char[][] opponentView = opponent.getBoardForOpponent();
-                if (opponentView[r][c] != ' ') {
+                Board opponentBoard = opponent.getBoard();
+                if (opponentBoard.isShot(r, c)) {
                     return;
                 }
-                ((HumanPlayer) current).setNextShot(r, c, opponentView);
-                Player targetOpponent = opponent;
+                ((HumanPlayer) current).setNextShot(r, c, opponentBoard);
                 String result = controller.takeTurn();
+                autosave();
                 
-                char[][] updatedView = targetOpponent.getBoardForOpponent();
-                boolean sunk = updatedView[r][c] == 'D';
-                boolean hit = updatedView[r][c] == 'H' || updatedView[r][c] == 'D';
+                char cell = opponentBoard.getInfoCoord(r, c);
+                boolean sunk = cell == 'D';
+                boolean hit = cell == 'H' || cell == 'D';
                 
                 controller.switchPlayers();
                 opponentBoardPanel.updateBoard();
@@ -375,37 +411,55 @@ public class GameWindow extends JFrame {
         }
 
         private void playComputerTurn() {
-            // Disable opponent board during computer's turn
+            // Disable opponent board and undo during computer's turn
             opponentBoardPanel.setEnabled(false);
+            undoButton.setEnabled(false);
             // when its computer turn
             statusLabel.setText("Computer's Turn");
             Player humanPlayer = controller.getOpponent();
             int humanShipsRemaining = countRemainingShips(humanPlayer);
             int computerShipsRemaining = countRemainingShips(controller.getCurrentPlayer());
             shipsInfoLabel.setText("Your remaining: " + humanShipsRemaining + " | Computer remaining: " + computerShipsRemaining);
-            // default 1,5s for computer turn
-            Timer timer = new Timer(1500, e -> {
-                String result = controller.takeTurn();
-                // Update boards after computer turn
-                myBoardPanel.updateBoard();
-                opponentBoardPanel.updateBoard();
-                if (result.equals("gameOver")) {
-                    myBoardLabel.setText("Computer Board");
-                    opponentBoardLabel.setText("Your Board");
-                    opponentBoardPanel.setEnabled(false);
-                    statusLabel.setText("You lose! Computer Wins!");
-                    int humanRemaining = countRemainingShips(controller.getCurrentPlayer());
-                    int computerRemaining = countRemainingShips(controller.getOpponent());
-                    shipsInfoLabel.setText("Your remaining: " + humanRemaining + " | Computer remaining: " + computerRemaining);
-                    JOptionPane.showMessageDialog(GameWindow.this, "You lose! Computer wins!");
-                } else {
-                    //enable user to make guess
-                    opponentBoardPanel.setEnabled(true);
-                    updateStatus();
+            // default 1,5s for computer turn, the computer thinks on a worker thread while it lasts
+            Player computer = controller.getCurrentPlayer();
+            Board target = controller.getOpponent().getBoard();
+            long started = System.currentTimeMillis();
+            new SwingWorker<Void, Void>() {
+                @Override
+                protected Void doInBackground() {
+                    computer.planShot(target);
+                    return null;
                 }
-            });
-            timer.setRepeats(false);
-            timer.start();
+                @Override
+                protected void done() {
+                    int remaining = (int) Math.max(0, COMPUTER_TURN_MILLIS - (System.currentTimeMillis() - started));
+                    Timer timer = new Timer(remaining, e -> finishComputerTurn());
+                    timer.setRepeats(false);
+                    timer.start();
+                }
+            }.execute();
+        }
+        private void finishComputerTurn() {
+            String result = controller.takeTurn();
+            autosave();
+            undoButton.setEnabled(true);
+            // Update boards after computer turn
+            myBoardPanel.updateBoard();
+            opponentBoardPanel.updateBoard();
+            if (result.equals("gameOver")) {
+                myBoardLabel.setText("Computer Board");
+                opponentBoardLabel.setText("Your Board");
+                opponentBoardPanel.setEnabled(false);
+                statusLabel.setText("You lose! Computer Wins!");
+                int humanRemaining = countRemainingShips(controller.getCurrentPlayer());
+                int computerRemaining = countRemainingShips(controller.getOpponent());
+                shipsInfoLabel.setText("Your remaining: " + humanRemaining + " | Computer remaining: " + computerRemaining);
+                JOptionPane.showMessageDialog(GameWindow.this, "You lose! Computer wins!");
+            } else {
+                //enable user to make guess
+                opponentBoardPanel.setEnabled(true);
+                updateStatus();
+            }
         }
         //update board (with red X for hit and blue for miss)
         public void updateBoard() {
@@ -416,8 +470,8 @@ public class GameWindow extends JFrame {
             if (isMyBoard) {
                 char[][] infoGrid = current.getBoard().getInfoGrid();
                 java.util.List<Ship> ships = current.getShips();
-                for (int r = 0; r < 10; r++) {
-                    for (int c = 0; c < 10; c++) {
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < cols; c++) {
                         CellButton btn = buttons[r][c];
                         btn.ship = null;
                         btn.shipIndex = -1;
@@ -435,7 +489,7 @@ public class GameWindow extends JFrame {
                     for (int i = 0; i < ship.getLength(); i++) {
                         int r = horizontal ? startRow : startRow + i;
                         int c = horizontal ? startCol + i : startCol;
-                        if (r >= 0 && r < 10 && c >= 0 && c < 10) {
+                        if (r >= 0 && r < rows && c >= 0 && c < cols) {
                             CellButton btn = buttons[r][c];
                             btn.ship = ship;
                             btn.shipIndex = shipIdx;
@@ -445,26 +499,25 @@ public class GameWindow extends JFrame {
                     }
                 }
                 // Mark opponent shots on our board
-                char[][] opponentGuesses = current.getBoard().getInfoGrid();
-                for (int r = 0; r < 10; r++) {
-                    for (int c = 0; c < 10; c++) {
-                        char cell = opponentGuesses[r][c];
-                        if (cell == 'H' || cell == 'M' || cell == 'D') {
+                Board myBoard = current.getBoard();
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < cols; c++) {
+                        if (myBoard.isShot(r, c)) {
                             buttons[r][c].isOpponentShot = true;
                         }
                     }
                 }
                 // Repaint buttons
-                for (int r = 0; r < 10; r++) {
-                    for (int c = 0; c < 10; c++) {
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < cols; c++) {
                         buttons[r][c].repaint();
                     }
                 }
             } else {
                 // show guesses on opponeent board
                 char[][] view = opponent.getBoardForOpponent();
-                for (int r = 0; r < 10; r++) {
-                    for (int c = 0; c < 10; c++) {
+                for (int r = 0; r < rows; r++) {
+                    for (int c = 0; c < cols; c++) {
                         CellButton btn = buttons[r][c];
                         char cell = view[r][c];
                         btn.ship = null;
@@ -496,8 +549,8 @@ public class GameWindow extends JFrame {
         }
         
         public void setEnabled(boolean enabled) {
-            for (int r = 0; r < 10; r++) {
-                for (int c = 0; c < 10; c++) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < cols; c++) {
                     buttons[r][c].setEnabled(enabled && !isMyBoard);
                 }
             }
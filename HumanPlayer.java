@@ -1,18 +1,29 @@
 // Human player 
 public class HumanPlayer extends Player
 {
-    private int[] nextShot = null;  // Stores the next shot
+    private long nextShot = NO_SHOT;  // Stores the next shot as a packed cell
+    public HumanPlayer() {
+    }
+    public HumanPlayer(GameRules rules) {
+        super(rules);
+    }
     //return the shot chosen by player
-    public int[] chooseShot(char[][] opponentBoard) {
-        int[] shot = nextShot;
-        nextShot = null;
+    public long chooseShotCell(Board opponentBoard) {
+        long shot = nextShot;
+        nextShot = NO_SHOT;
         return shot;
     }
     //set next shot (can only be an empty cell)
+    public void setNextShot(int r, int c, Board opponentBoard) { 
+        if(!opponentBoard.isShot(r, c)) 
+            nextShot = opponentBoard.cellIndex(r, c); 
+        else
+            nextShot = NO_SHOT; 
+    }
     public void setNextShot(int r, int c, char[][] opponentBoard) { 
         if(opponentBoard[r][c]==' ') 
-            nextShot = new int[]{r, c}; 
+            nextShot = (long) r * opponentBoard[0].length + c; 
         else
-            nextShot = null; 
+            nextShot = NO_SHOT; 
     }
-}
\ No newline at end of file
+}
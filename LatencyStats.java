@@ -0,0 +1,103 @@
+// Distribution of durations (AI decisions, saves, ...) in a fixed log-linear histogram: 8 buckets per power of two,
+// so percentiles are exact to about 12% whatever the range, and recording allocates nothing.
+// Thread safe, recorded from the game thread and read from anywhere.
+
+public class LatencyStats
+{
+    private static final int SUB_BUCKETS = 8;                  // per power of two
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public synchronized void record(long nanos)
+    {
+        nanos = Math.max(0, nanos);
+        buckets[bucket(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+    public synchronized void add(LatencyStats other)
+    {
+        synchronized (other)
+        {
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                buckets[i] += other.buckets[i];
+            }
+            count += other.count;
+            totalNanos += other.totalNanos;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+        }
+    }
+    public synchronized void reset()
+    {
+        java.util.Arrays.fill(buckets, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    // values below 8 get a bucket each, above that the top 3 bits after the leading one pick the sub bucket
+    private static int bucket(long nanos)
+    {
+        if (nanos < SUB_BUCKETS)
+        {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return (exponent - 2) * SUB_BUCKETS + sub;
+    }
+    // largest value falling in the bucket
+    private static long upperBound(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + 2;
+        long low = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 3);
+        return low + (1L << (exponent - 3)) - 1;
+    }
+
+    public synchronized long getCount()
+    {
+        return count;
+    }
+    public synchronized long getMaxNanos()
+    {
+        return maxNanos;
+    }
+    public synchronized double getMeanNanos()
+    {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+    // smallest bucket bound at or above the given share of the values (0.5 median, 0.99 ...), 0 if empty
+    public synchronized long getPercentileNanos(double quantile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += buckets[i];
+            if (seen >= rank)
+            {
+                return Math.min(upperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+    public String toString()
+    {
+        return String.format("%d samples, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                getCount(), getMeanNanos() / 1e6, getPercentileNanos(0.5) / 1e6, getPercentileNanos(0.99) / 1e6, getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,74 @@
+// Open addressing hash map from long keys to int values, without boxing.
+// Used for the tile and ship cell lookups of ChunkedOcean.
+
+import java.io.Serializable;
+
+class LongIntMap implements Serializable
+{
+    private long[] keys = new long[16];
+    private int[] values = new int[16];
+    private boolean[] used = new boolean[16];
+    private int size = 0;
+
+    private static int slot(long key, int mask)
+    {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    public int get(long key, int missing)
+    {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); used[i]; i = (i + 1) & mask)
+        {
+            if (keys[i] == key)
+            {
+                return values[i];
+            }
+        }
+        return missing;
+    }
+    public void put(long key, int value)
+    {
+        if ((size + 1) * 2 > keys.length)
+        {
+            grow();
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (used[i])
+        {
+            if (keys[i] == key)
+            {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+    public int size()
+    {
+        return size;
+    }
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldUsed[i])
+            {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ public class Main
 {
     public static void main(String[] args) 
     {
+      DecisionCache.shared(); // reads the opening book, if there is one
       SwingUtilities.invokeLater(() -> {
         StartScreen startScreen = new StartScreen();
         startScreen.setVisible(true);
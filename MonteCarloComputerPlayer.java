@@ -0,0 +1,312 @@
+// Computer player that samples random layouts of the ships still afloat that agree with what it has seen
+// (no ship on a miss or a sunk cell, every open hit covered) and fires at the unknown cell occupied in the most
+// samples. Sampling runs on all cores and stops at the sample count or the deadline, whichever comes first.
+// Samples are drawn with PlacementEngine from tables with the shot cells blocked. When too few layouts can be
+// built it falls back to the density player. With a deadline the result depends on timing,
+// with only a sample count it is deterministic for a seeded player.
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+
+public class MonteCarloComputerPlayer extends DensityComputerPlayer
+{
+    public static final int DEFAULT_SAMPLES = 20000;
+    public static final long DEFAULT_BUDGET_MILLIS = 1000;
+    private static final int MIN_SAMPLES = 50;        // fewer layouts than this and the sample is too thin
+    private static final int ATTEMPTS_PER_SAMPLE = 20; // dead ends allowed per layout before giving up
+
+    private final int maxSamples;
+    private final long budgetNanos;
+    private final int workers;
+    private transient volatile int lastSamples;
+
+    public MonteCarloComputerPlayer()
+    {
+        this(GameRules.STANDARD);
+    }
+    public MonteCarloComputerPlayer(GameRules rules)
+    {
+        this(rules, DEFAULT_SAMPLES, DEFAULT_BUDGET_MILLIS);
+    }
+    // budgetMillis <= 0 means no deadline, only the sample count
+    public MonteCarloComputerPlayer(GameRules rules, int maxSamples, long budgetMillis)
+    {
+        this(rules, maxSamples, budgetMillis, Runtime.getRuntime().availableProcessors());
+    }
+    public MonteCarloComputerPlayer(GameRules rules, int maxSamples, long budgetMillis, int workers)
+    {
+        super(rules);
+        this.maxSamples = maxSamples;
+        this.budgetNanos = budgetMillis > 0 ? budgetMillis * 1_000_000L : Long.MAX_VALUE;
+        this.workers = Math.max(1, workers);
+    }
+
+    @Override
+    protected long decide(Board opponentBoard)
+    {
+        if (opponentBoard.getRules().isSparse())
+        {
+            return super.decide(opponentBoard);
+        }
+        long start = System.nanoTime();
+        long deadline = budgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + budgetNanos;
+        Sampler sampler = new Sampler(opponentBoard);
+        List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+        int quota = (maxSamples + workers - 1) / workers;
+        for (int w = 0; w < workers; w++)
+        {
+            long seed = getRandom().nextLong(); // drawn in order, so a seeded player gives the same workers
+            tasks.add(ForkJoinTask.adapt((Callable<int[]>) () -> sampler.run(new SplittableRandom(seed), quota, deadline)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        int cells = sampler.cells;
+        int[] counts = new int[cells];
+        int samples = 0;
+        for (ForkJoinTask<int[]> task : tasks)
+        {
+            int[] workerCounts = task.join();
+            for (int cell = 0; cell < cells; cell++)
+            {
+                counts[cell] += workerCounts[cell];
+            }
+            samples += workerCounts[cells];
+        }
+        lastSamples = samples;
+        if (samples < MIN_SAMPLES)
+        {
+            return super.decide(opponentBoard);
+        }
+        // hunting (no open hit to finish): the opponent's habits weigh in
+        double[] weights = sampler.openHits.length == 0 ? huntWeights(opponentBoard) : null;
+        int best = NO_SHOT;
+        double bestScore = 0;
+        int ties = 0;
+        for (int cell = 0; cell < cells; cell++)
+        {
+            double score = weights == null ? counts[cell] : counts[cell] * weights[cell];
+            if (score > bestScore)
+            {
+                best = cell;
+                bestScore = score;
+                ties = 1;
+            }
+            else if (score == bestScore && bestScore > 0 && getRandom().nextInt(++ties) == 0)
+            {
+                best = cell;
+            }
+        }
+        return best != NO_SHOT ? best : super.decide(opponentBoard);
+    }
+
+    // agreeing layouts behind the last decision
+    public int getLastSamples()
+    {
+        return lastSamples;
+    }
+
+    // What the workers share: the view of the opponent board, read once per decision
+    private static class Sampler
+    {
+        final GameRules rules;
+        final int cols;
+        final int[] blocked;        // misses and destroyed cells
+        final int[] openHits;       // hits on ships not sunk yet
+        final boolean[] unknown;    // cells not shot yet
+        final int[] fleet;          // lengths of the ships still afloat, longest first
+        final int cells;
+
+        Sampler(Board board)
+        {
+            rules = board.getRules();
+            cols = rules.getCols();
+            int cells = (int) rules.getCells();
+            unknown = new boolean[cells];
+            int blockedCount = 0;
+            int hitCount = 0;
+            int[] blockedCells = new int[cells];
+            int[] hitCells = new int[cells];
+            for (int cell = 0; cell < cells; cell++)
+            {
+                char v = board.getInfoCell(cell);
+                if (v == 'M' || v == 'D')
+                {
+                    blockedCells[blockedCount++] = cell;
+                }
+                else if (v == 'H')
+                {
+                    hitCells[hitCount++] = cell;
+                }
+                else
+                {
+                    unknown[cell] = true;
+                }
+            }
+            blocked = java.util.Arrays.copyOf(blockedCells, blockedCount);
+            openHits = java.util.Arrays.copyOf(hitCells, hitCount);
+            FleetStatus status = board.getFleetStatus();
+            int[] lengths = rules.getFleet().getLengths();
+            int[] afloat = new int[lengths.length];
+            int n = 0;
+            for (int length = status.getMaxLength(); length >= 1; length--)
+            {
+                for (int k = 0; k < status.getRemaining(length); k++)
+                {
+                    afloat[n++] = length;
+                }
+            }
+            fleet = java.util.Arrays.copyOf(afloat, n);
+            this.cells = cells;
+        }
+
+        // Samples on the calling thread, returns the occupancy of every unknown cell with the number of
+        // agreeing samples appended. Each sample first puts a ship through every open hit not covered yet
+        // (drawn over all ships and legal placements through it), then the other ships anywhere legal.
+        // That keeps almost every sample instead of rejecting the ones that miss a hit, at the cost of a
+        // slight bias towards layouts with few ways to cover the hits.
+        int[] run(SplittableRandom rand, int quota, long deadline)
+        {
+            int[] result = new int[cells + 1];
+            PlacementEngine engine = PlacementEngine.forRules(rules);
+            engine.reset();
+            for (int cell : blocked)
+            {
+                engine.block(cell / cols, cell % cols);
+            }
+            engine.mark();
+            long[] occupied = new long[(cells + 63) / 64];
+            int[] placed = new int[fleet.length];
+            boolean[] used = new boolean[fleet.length];
+            int samples = 0;
+            long maxAttempts = (long) quota * ATTEMPTS_PER_SAMPLE;
+            for (long attempt = 0; attempt < maxAttempts && samples < quota; attempt++)
+            {
+                if ((attempt & 63) == 0 && deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)
+                {
+                    break;
+                }
+                engine.rewind();
+                java.util.Arrays.fill(used, false);
+                java.util.Arrays.fill(occupied, 0);
+                boolean complete = true;
+                for (int cell : openHits)
+                {
+                    if ((occupied[cell >>> 6] & (1L << cell)) != 0)
+                    {
+                        continue;
+                    }
+                    int s = coverHit(engine, cell, used, placed, rand);
+                    if (s < 0)
+                    {
+                        complete = false;
+                        break;
+                    }
+                    place(engine, occupied, used, s, placed[s]);
+                }
+                for (int s = 0; s < fleet.length && complete; s++)
+                {
+                    if (used[s])
+                    {
+                        continue;
+                    }
+                    int placement = engine.pick(fleet[s], rand);
+                    if (placement < 0)
+                    {
+                        complete = false;
+                        break;
+                    }
+                    place(engine, occupied, used, s, placement);
+                    placed[s] = placement;
+                }
+                if (!complete)
+                {
+                    continue;
+                }
+                for (int s = 0; s < fleet.length; s++)
+                {
+                    int start = placed[s] >> 1;
+                    int step = (placed[s] & 1) == 0 ? 1 : cols;
+                    for (int k = 0, cell = start; k < fleet[s]; k++, cell += step)
+                    {
+                        if (unknown[cell])
+                        {
+                            result[cell]++;
+                        }
+                    }
+                }
+                samples++;
+            }
+            result[cells] = samples;
+            return result;
+        }
+        private void place(PlacementEngine engine, long[] occupied, boolean[] used, int s, int placement)
+        {
+            int start = placement >> 1;
+            boolean horizontal = (placement & 1) == 0;
+            engine.place(start / cols, start % cols, fleet[s], horizontal);
+            for (int k = 0, cell = start; k < fleet[s]; k++, cell += horizontal ? 1 : cols)
+            {
+                occupied[cell >>> 6] |= 1L << cell;
+            }
+            used[s] = true;
+        }
+        // Draws a ship not placed yet and a legal placement of it through the cell, returns the ship or -1
+        private int coverHit(PlacementEngine engine, int cell, boolean[] used, int[] placed, SplittableRandom rand)
+        {
+            int total = 0;
+            for (int s = 0; s < fleet.length; s++)
+            {
+                if (!used[s])
+                {
+                    total += through(engine, cell, fleet[s], -1);
+                }
+            }
+            if (total == 0)
+            {
+                return -1;
+            }
+            int k = rand.nextInt(total);
+            for (int s = 0; s < fleet.length; s++)
+            {
+                if (used[s])
+                {
+                    continue;
+                }
+                int n = through(engine, cell, fleet[s], -1);
+                if (k < n)
+                {
+                    placed[s] = through(engine, cell, fleet[s], k);
+                    return s;
+                }
+                k -= n;
+            }
+            return -1;
+        }
+        // legal placements of the length through the cell: how many if k < 0, otherwise the k-th one
+        // (start cell * 2 + (horizontal ? 0 : 1))
+        private int through(PlacementEngine engine, int cell, int length, int k)
+        {
+            int rows = rules.getRows();
+            int r = cell / cols;
+            int c = cell % cols;
+            int n = 0;
+            for (int sc = Math.max(0, c - length + 1); sc <= Math.min(c, cols - length); sc++)
+            {
+                if (engine.isLegal(r, sc, length, true) && n++ == k)
+                {
+                    return (r * cols + sc) * 2;
+                }
+            }
+            for (int sr = Math.max(0, r - length + 1); sr <= Math.min(r, rows - length); sr++)
+            {
+                if (engine.isLegal(sr, c, length, false) && n++ == k)
+                {
+                    return (sr * cols + c) * 2 + 1;
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,450 @@
+// Append-only record of a game, written by GameController as it is played: the whole state once (a snapshot
+// in the GameFile format, so the fleets), then a record of a few bytes per shot. Records are written and
+// fsynced in batches, each closed by a commit record with the CRC32 of the batch; after a crash, replay
+// stops at the last intact commit. A new snapshot is appended once the shots since the last one took as many
+// bytes as it did, and at least SNAPSHOT_INTERVAL shots (and after an undo or restore). Replay starts from the
+// last committed snapshot, so it reads at most about two snapshots' worth whatever the length of the game,
+// while the snapshots at most double the size of the journal.
+// Layout: magic, version (ints), then records, each a tag byte followed by:
+//   SHOT_1, SHOT_2 - the cell shot by player 1 or 2 (a long), unsigned LEB128 (one byte on boards up to 128 cells)
+//   SNAPSHOT       - length (int) and a whole GameFile
+//   COMMIT         - CRC32 (int) of the bytes since the previous commit (the first one includes the header)
+// The thread that plays the game only encodes the shot records and captures the state for a snapshot (see
+// GameFile.capture). Creating the file, encoding the snapshots, writing and fsyncing are done on a single
+// background thread, like AutosaveService does, in the order the batches were committed. If the journal cannot
+// be written it is disabled with a message, the game goes on.
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+public final class MoveJournal implements Closeable
+{
+    private static final int MAGIC = 0x42534a31; // "BSJ1"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+    private static final byte SHOT_1 = 1;
+    private static final byte SHOT_2 = 2;
+    private static final byte SNAPSHOT = 3;
+    private static final byte COMMIT = 4;
+    public static final int DEFAULT_BATCH_SHOTS = 8;
+    public static final int SNAPSHOT_INTERVAL = 64;
+    public static final int KEEP_JOURNALS = 100;  // the oldest ones in the journal directory are deleted
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "journal-" + count.incrementAndGet());
+            thread.setDaemon(true); // never keeps the game from exiting, replay stops at the last whole batch
+            return thread;
+        }
+    });
+
+    private final Path file;
+    private final int batchShots;
+    // game thread: the batch being collected, shot records in pending and the states of its snapshots in batch
+    private ByteBuffer pending = ByteBuffer.allocate(256);
+    private List<Object> batch = new ArrayList<>();
+    private int pendingShots;
+    private int shotsSinceSnapshot;
+    private long bytesSinceSnapshot;
+    private boolean closed;
+    private volatile Future<?> last = CompletableFuture.completedFuture(null);
+    // writer thread
+    private FileChannel channel;    // null until opened, and once closed or failed
+    private final CRC32 crc = new CRC32();
+    private volatile int snapshotBytes;
+    private volatile boolean failed;
+
+    private MoveJournal(Path file, int batchShots)
+    {
+        this.file = file;
+        this.batchShots = Math.max(1, batchShots);
+    }
+
+    // Starts a journal of the game in its current state, replacing the file. Returns at once, the file is
+    // created on the writer thread.
+    public static MoveJournal create(Path file, GameController controller, int batchShots)
+    {
+        return create(file, controller, batchShots, -1);
+    }
+    // keep >= 0 first deletes all but the newest keep journals of the file's directory
+    private static MoveJournal create(Path file, GameController controller, int batchShots, int keep)
+    {
+        MoveJournal journal = new MoveJournal(file, batchShots);
+        journal.write(() -> journal.open(keep));
+        journal.pending.putInt(MAGIC).putInt(VERSION); // the first batch covers the header
+        journal.snapshot(controller);
+        journal.commit();
+        return journal;
+    }
+    // A new journal in <data dir>/journals named after the current time, pruning the old ones
+    public static MoveJournal createDefault(GameController controller)
+    {
+        Path dir = DecisionCache.dataDir().toPath().resolve("journals");
+        String name = "game-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".bsj";
+        return create(dir.resolve(name), controller, DEFAULT_BATCH_SHOTS, KEEP_JOURNALS - 1);
+    }
+    // writer thread: creates the file
+    private void open(int keep) throws IOException
+    {
+        if (file.getParent() != null)
+        {
+            Files.createDirectories(file.getParent());
+            if (keep >= 0)
+            {
+                prune(file.getParent(), keep);
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    // deletes all but the newest keep journals of the directory (names sort by time)
+    private static void prune(Path dir, int keep) throws IOException
+    {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(".bsj"));
+        if (files == null || files.length <= keep)
+        {
+            return;
+        }
+        java.util.Arrays.sort(files);
+        for (int i = 0; i < files.length - keep; i++)
+        {
+            Files.deleteIfExists(files[i].toPath());
+        }
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+    // false once closed, or if the file could not be written
+    public boolean isOpen()
+    {
+        return !closed && !failed;
+    }
+
+    // Records a shot taken in the game, after it was applied to the boards
+    void shot(GameController controller, long move, boolean byPlayer1)
+    {
+        if (!isOpen())
+        {
+            return;
+        }
+        reserve(11);
+        int start = pending.position();
+        pending.put(byPlayer1 ? SHOT_1 : SHOT_2);
+        for (long v = move; ; v >>>= 7)
+        {
+            if ((v & ~0x7F) == 0)
+            {
+                pending.put((byte) v);
+                break;
+            }
+            pending.put((byte) (v & 0x7F | 0x80));
+        }
+        pendingShots++;
+        bytesSinceSnapshot += pending.position() - start;
+        if (++shotsSinceSnapshot >= SNAPSHOT_INTERVAL && bytesSinceSnapshot >= snapshotBytes)
+        {
+            snapshot(controller);
+        }
+        if (pendingShots >= batchShots)
+        {
+            commit();
+        }
+    }
+    // Records the whole state, after an undo or restore made the shots so far no longer add up to it
+    void checkpoint(GameController controller)
+    {
+        if (!isOpen())
+        {
+            return;
+        }
+        snapshot(controller);
+        commit();
+    }
+    // only captures the state, the writer encodes it (and learns its size for the snapshot rule)
+    private void snapshot(GameController controller)
+    {
+        takePending();
+        batch.add(GameFile.capture(controller));
+        shotsSinceSnapshot = 0;
+        bytesSinceSnapshot = 0;
+    }
+    // moves the records collected so far into the batch
+    private void takePending()
+    {
+        if (pending.position() > 0)
+        {
+            batch.add(java.util.Arrays.copyOf(pending.array(), pending.position()));
+            pending.clear();
+        }
+    }
+    // Hands what is pending to the writer, which writes and fsyncs it closed by a commit record
+    public void commit()
+    {
+        takePending();
+        if (!isOpen() || batch.isEmpty())
+        {
+            return;
+        }
+        List<Object> parts = batch;
+        batch = new ArrayList<>();
+        pendingShots = 0;
+        write(() -> writeBatch(parts));
+    }
+    private void reserve(int bytes)
+    {
+        if (pending.remaining() < bytes)
+        {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    // a step of the writer thread, skipped once the journal failed
+    private interface Step
+    {
+        void run() throws IOException;
+    }
+    private void write(Step step)
+    {
+        last = WRITER.submit(() -> {
+            if (failed)
+            {
+                return;
+            }
+            try
+            {
+                step.run();
+            }
+            catch (IOException | RuntimeException e)
+            {
+                fail(e);
+            }
+        });
+    }
+    // writer thread: encodes the snapshots of a batch and writes it with its commit record
+    private void writeBatch(List<Object> parts) throws IOException
+    {
+        List<ByteBuffer> encoded = new ArrayList<>(parts.size());
+        long size = 5;
+        for (Object part : parts)
+        {
+            ByteBuffer bytes = part instanceof byte[] ? ByteBuffer.wrap((byte[]) part) : GameFile.encode(part);
+            encoded.add(bytes);
+            size += bytes.remaining() + (part instanceof byte[] ? 0 : 5);
+        }
+        if (size > Integer.MAX_VALUE - 64)
+        {
+            throw new IOException("batch of " + size + " bytes is too large");
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) size);
+        for (int i = 0; i < parts.size(); i++)
+        {
+            ByteBuffer bytes = encoded.get(i);
+            if (!(parts.get(i) instanceof byte[]))
+            {
+                out.put(SNAPSHOT);
+                out.putInt(bytes.remaining());
+                snapshotBytes = 5 + bytes.remaining();
+            }
+            out.put(bytes);
+        }
+        crc.reset();
+        crc.update(out.array(), 0, out.position());
+        out.put(COMMIT);
+        out.putInt((int) crc.getValue());
+        out.flip();
+        while (out.hasRemaining())
+        {
+            channel.write(out);
+        }
+        channel.force(false);
+    }
+    private void fail(Exception e)
+    {
+        System.err.println("Move journal " + file + " disabled: " + e.getMessage());
+        failed = true;
+        closeChannel();
+    }
+    private void closeChannel()
+    {
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println("Move journal " + file + ": " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    // Commits what is pending and closes the file, on the writer thread (see flush)
+    @Override
+    public void close()
+    {
+        if (closed)
+        {
+            return;
+        }
+        commit();
+        closed = true;
+        write(this::closeChannel);
+    }
+    // Waits up to the timeout for everything committed so far to be written, true if it is
+    public boolean flush(long timeoutMillis)
+    {
+        try
+        {
+            last.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return !failed;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException | TimeoutException e)
+        {
+            return false;
+        }
+    }
+
+    // Rebuilds the game of a journal as of its last intact commit. Player 1 is a human, player 2 comes from
+    // the factory for the rules of the game. Only the shots after the last committed snapshot are replayed.
+    public static GameController replay(Path file, Function<GameRules, Player> player2Factory) throws IOException
+    {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() > Integer.MAX_VALUE - 64)
+            {
+                throw new IOException(file.getFileName() + " is too large for a journal");
+            }
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+            {
+                // one pass over the file
+            }
+            buffer.flip();
+        }
+        if (buffer.remaining() < HEADER || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("not a move journal");
+        }
+        if (buffer.getInt(4) != VERSION)
+        {
+            throw new IOException("unsupported move journal version " + buffer.getInt(4));
+        }
+        // find the end of the committed records and the last snapshot in them
+        int committed = -1;
+        int lastSnapshot = -1;
+        int batchSnapshot = -1;
+        int batchStart = 0;
+        int at = HEADER;
+        CRC32 check = new CRC32();
+        while (at < buffer.limit())
+        {
+            int tag = buffer.get(at);
+            int next;
+            if (tag == SHOT_1 || tag == SHOT_2)
+            {
+                next = at + 1;
+                while (next < buffer.limit() && (buffer.get(next) & 0x80) != 0)
+                {
+                    next++;
+                }
+                next++;
+            }
+            else if (tag == SNAPSHOT)
+            {
+                next = at + 5 <= buffer.limit() ? at + 5 + buffer.getInt(at + 1) : Integer.MAX_VALUE;
+                batchSnapshot = at;
+            }
+            else if (tag == COMMIT && at + 5 <= buffer.limit())
+            {
+                check.reset();
+                check.update(buffer.array(), batchStart, at - batchStart);
+                if ((int) check.getValue() != buffer.getInt(at + 1))
+                {
+                    break; // damaged batch, everything from here on is lost
+                }
+                next = at + 5;
+                committed = next;
+                batchStart = next;
+                if (batchSnapshot >= 0)
+                {
+                    lastSnapshot = batchSnapshot;
+                }
+            }
+            else
+            {
+                break;
+            }
+            if (next < at || next > buffer.limit())
+            {
+                break; // torn last record
+            }
+            at = next;
+        }
+        if (lastSnapshot < 0)
+        {
+            throw new IOException("move journal damaged: no committed state");
+        }
+        int length = buffer.getInt(lastSnapshot + 1);
+        ByteBuffer state = ByteBuffer.wrap(buffer.array(), lastSnapshot + 5, length).slice();
+        GameController controller = GameFile.decode(state, player2Factory);
+        for (at = lastSnapshot + 5 + length; at < committed; )
+        {
+            int tag = buffer.get(at++);
+            if (tag == SHOT_1 || tag == SHOT_2)
+            {
+                long move = 0;
+                for (int shift = 0; ; shift += 7)
+                {
+                    int b = buffer.get(at++);
+                    move |= (long) (b & 0x7F) << shift;
+                    if ((b & 0x80) == 0 || shift > 63)
+                    {
+                        break;
+                    }
+                }
+                Board target = controller.getOpponent().getBoard();
+                if ((tag == SHOT_1) != (controller.getCurrentPlayer() == controller.getPlayer1())
+                        || move < 0 || move >= target.getRules().getCells() || target.isShotCell(move))
+                {
+                    throw new IOException("move journal damaged: shot " + move + " does not fit the game");
+                }
+                controller.playShot(move);
+            }
+            else if (tag == SNAPSHOT)
+            {
+                at += 4 + buffer.getInt(at);
+            }
+            else
+            {
+                at += 4; // COMMIT
+            }
+        }
+        return controller;
+    }
+}
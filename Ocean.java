@@ -0,0 +1,33 @@
+// Cell storage behind a Board: four bit planes (ship, hit, miss, destroyed) and the ship id of every ship cell.
+// DenseOcean keeps whole-board bitboards, ChunkedOcean only allocates the 64x64 tiles that were touched.
+
+import java.io.Serializable;
+
+abstract class Ocean implements Serializable
+{
+    static final int SHIP = 0;      // 'S'
+    static final int HIT = 1;       // 'H' and 'D' (every ship cell that was hit)
+    static final int MISS = 2;      // 'M'
+    static final int DESTROYED = 3; // 'D'
+    static final int PLANES = 4;
+
+    abstract boolean test(int plane, int r, int c);
+    abstract void set(int plane, int r, int c);
+    abstract void clear(int plane, int r, int c);
+    // number of set cells in the plane
+    abstract int count(int plane);
+    // id of the ship on the cell or -1
+    abstract int getShipId(int r, int c);
+    abstract void setShipId(int r, int c, int id);
+    abstract void clearShips();
+    abstract void clearAll();
+    // the whole plane as row major bits, or null if the ocean is not stored densely
+    abstract long[] densePlane(int plane);
+    // calls the visitor for every set cell of the plane, costs the set cells (and the words holding them), not the area
+    abstract void forEach(int plane, CellVisitor visitor);
+
+    interface CellVisitor
+    {
+        void visit(int r, int c);
+    }
+}
@@ -0,0 +1,69 @@
+// Immutable bit set with structural sharing: the words are split into small pages and set() only copies
+// the page table and the one page that changes, every other page is shared with the previous version.
+// Used by GameSnapshot so that a snapshot after one shot costs a few small copies, not a copy of the board.
+
+final class PersistentBits
+{
+    private static final int PAGE_SHIFT = 3; // 8 words (512 cells) per page
+    private static final int PAGE_WORDS = 1 << PAGE_SHIFT;
+
+    private final long[][] pages; // never written once the instance is published
+    private final int count;
+
+    private PersistentBits(long[][] pages, int count)
+    {
+        this.pages = pages;
+        this.count = count;
+    }
+
+    // copies the given row major words into a new bit set
+    static PersistentBits of(long[] words)
+    {
+        long[][] pages = new long[(words.length + PAGE_WORDS - 1) >> PAGE_SHIFT][];
+        int count = 0;
+        for (int p = 0; p < pages.length; p++)
+        {
+            pages[p] = new long[PAGE_WORDS];
+            int from = p << PAGE_SHIFT;
+            System.arraycopy(words, from, pages[p], 0, Math.min(PAGE_WORDS, words.length - from));
+        }
+        for (long word : words)
+        {
+            count += Long.bitCount(word);
+        }
+        return new PersistentBits(pages, count);
+    }
+
+    boolean get(int i)
+    {
+        int word = i >>> 6;
+        return (pages[word >> PAGE_SHIFT][word & (PAGE_WORDS - 1)] & (1L << i)) != 0;
+    }
+    // new version with bit i set, or this one if it already was
+    PersistentBits set(int i)
+    {
+        if (get(i))
+        {
+            return this;
+        }
+        int word = i >>> 6;
+        int p = word >> PAGE_SHIFT;
+        long[][] newPages = pages.clone();
+        newPages[p] = pages[p].clone();
+        newPages[p][word & (PAGE_WORDS - 1)] |= 1L << i;
+        return new PersistentBits(newPages, count + 1);
+    }
+    int count()
+    {
+        return count;
+    }
+    // writes the bits back into row major words
+    void copyTo(long[] words)
+    {
+        for (int p = 0; p < pages.length; p++)
+        {
+            int from = p << PAGE_SHIFT;
+            System.arraycopy(pages[p], 0, words, from, Math.min(PAGE_WORDS, words.length - from));
+        }
+    }
+}
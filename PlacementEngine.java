@@ -0,0 +1,473 @@
+// Random fleet placement without rejection sampling.
+// For every ship length of the fleet and both orientations the engine keeps the set of legal start cells
+// as a bitmask (row major, like the board planes). Placing a ship or blocking a cell clears every start
+// whose ship would cover it, so the next ship is drawn directly from what is still legal. Impossible
+// fleets are reported instead of looping forever: GameRules rejects them up front (checkFits), and the
+// search behind the random attempts gives up after SEARCH_NODES steps. Only for dense boards.
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+public class PlacementEngine
+{
+    private static final int RANDOM_ATTEMPTS = 100; // dead ends allowed before the exhaustive search
+    private static final int SEARCH_NODES = 100_000; // placements the exhaustive search tries before it gives up
+    private static final ThreadLocal<PlacementEngine> CACHE = new ThreadLocal<>();
+
+    private final GameRules rules;
+    private final int rows, cols, words;
+    private final int[] fleetLengths;
+    private final int[] lengths;           // distinct lengths of the fleet
+    private final int[] searchOrder;       // fleet indices, longest ship first
+    private final long[][][] initial;      // [horizontal ? 0 : 1][length] starts that stay on the board
+    private final int[][] initialCount;
+    private final long[][][] legal;        // same, minus the starts that are blocked
+    private final int[][] legalCount;
+    private long[][][] marked;             // tables saved by mark()
+    private int[][] markedCount;
+    private int searchNodes;               // left to the running search
+
+    // placement of every fleet ship (in fleet order) after a successful sample()
+    private final int[] startRow, startCol;
+    private final boolean[] horizontal;
+
+    public PlacementEngine(GameRules rules)
+    {
+        if (rules.isSparse())
+        {
+            throw new IllegalArgumentException("placement tables need a dense board");
+        }
+        this.rules = rules;
+        rows = rules.getRows();
+        cols = rules.getCols();
+        words = (int) ((rules.getCells() + 63) / 64);
+        fleetLengths = rules.getFleet().getLengths();
+        lengths = Arrays.stream(fleetLengths).distinct().toArray();
+        searchOrder = java.util.stream.IntStream.range(0, fleetLengths.length).boxed()
+                .sorted((a, b) -> fleetLengths[b] - fleetLengths[a]).mapToInt(Integer::intValue).toArray();
+        int maxLength = rules.getFleet().getMaxLength();
+        initial = new long[2][maxLength + 1][];
+        initialCount = new int[2][maxLength + 1];
+        legal = new long[2][maxLength + 1][];
+        legalCount = new int[2][maxLength + 1];
+        for (int length : lengths)
+        {
+            for (int o = 0; o < 2; o++)
+            {
+                long[] starts = new long[words];
+                int lastRow = o == 0 ? rows - 1 : rows - length;
+                int lastCol = o == 0 ? cols - length : cols - 1;
+                for (int r = 0; r <= lastRow; r++)
+                {
+                    for (int c = 0; c <= lastCol; c++)
+                    {
+                        int i = r * cols + c;
+                        starts[i >>> 6] |= 1L << i;
+                        initialCount[o][length]++;
+                    }
+                }
+                initial[o][length] = starts;
+                legal[o][length] = new long[words];
+            }
+        }
+        startRow = new int[fleetLengths.length];
+        startCol = new int[fleetLengths.length];
+        horizontal = new boolean[fleetLengths.length];
+        reset();
+    }
+
+    // engine for these rules, reused per thread so the tables are only built once
+    public static PlacementEngine forRules(GameRules rules)
+    {
+        PlacementEngine engine = CACHE.get();
+        if (engine == null || !engine.rules.equals(rules))
+        {
+            engine = new PlacementEngine(rules);
+            CACHE.set(engine);
+        }
+        return engine;
+    }
+
+    public GameRules getRules()
+    {
+        return rules;
+    }
+
+    // every start that stays on the board is legal again
+    public void reset()
+    {
+        for (int length : lengths)
+        {
+            for (int o = 0; o < 2; o++)
+            {
+                System.arraycopy(initial[o][length], 0, legal[o][length], 0, words);
+                legalCount[o][length] = initialCount[o][length];
+            }
+        }
+    }
+
+    // Saves the current tables, rewind() goes back to them. Used to sample many fleets around the same blocked cells.
+    public void mark()
+    {
+        if (marked == null)
+        {
+            marked = saveTables();
+            markedCount = saveCounts();
+            return;
+        }
+        for (int length : lengths)
+        {
+            System.arraycopy(legal[0][length], 0, marked[0][length], 0, words);
+            System.arraycopy(legal[1][length], 0, marked[1][length], 0, words);
+        }
+        System.arraycopy(legalCount[0], 0, markedCount[0], 0, markedCount[0].length);
+        System.arraycopy(legalCount[1], 0, markedCount[1], 0, markedCount[1].length);
+    }
+    public void rewind()
+    {
+        restoreTables(marked, markedCount);
+    }
+
+    // no ship may cover (r, c) any more: clears every start, of any length and orientation, whose ship would cover it
+    public void block(int r, int c)
+    {
+        for (int length : lengths)
+        {
+            // horizontal starts in this row from c - length + 1 to c
+            int from = Math.max(0, c - length + 1);
+            int to = Math.min(c, cols - length);
+            if (from <= to)
+            {
+                legalCount[0][length] -= clearRange(legal[0][length], r * cols + from, r * cols + to);
+            }
+            // vertical starts in this column from r - length + 1 to r
+            long[] vertical = legal[1][length];
+            for (int sr = Math.max(0, r - length + 1); sr <= Math.min(r, rows - length); sr++)
+            {
+                int i = sr * cols + c;
+                if ((vertical[i >>> 6] & (1L << i)) != 0)
+                {
+                    vertical[i >>> 6] &= ~(1L << i);
+                    legalCount[1][length]--;
+                }
+            }
+        }
+    }
+
+    // marks the cells of a ship as taken
+    public void place(int r, int c, int length, boolean isHorizontal)
+    {
+        for (int i = 0; i < length; i++)
+        {
+            block(isHorizontal ? r : r + i, isHorizontal ? c + i : c);
+        }
+    }
+
+    public int countLegal(int length)
+    {
+        return legalCount[0][length] + legalCount[1][length];
+    }
+    public boolean isLegal(int r, int c, int length, boolean isHorizontal)
+    {
+        long[] starts = legal[isHorizontal ? 0 : 1][length];
+        int i = r * cols + c;
+        return starts != null && (starts[i >>> 6] & (1L << i)) != 0;
+    }
+
+    // Draws one legal placement of the given length uniformly, returns start cell * 2 + (horizontal ? 0 : 1)
+    // or -1 if there is none
+    public int pick(int length, RandomGenerator rand)
+    {
+        int total = countLegal(length);
+        if (total == 0)
+        {
+            return -1;
+        }
+        int k = rand.nextInt(total);
+        int o = 0;
+        if (k >= legalCount[0][length])
+        {
+            k -= legalCount[0][length];
+            o = 1;
+        }
+        return select(legal[o][length], k) * 2 + o;
+    }
+
+    // Places the whole fleet on empty tables (in fleet order), result in getStartRow/getStartCol/isHorizontal.
+    // A fleet too tight for the random attempts gets the first layout found by packLines or the search, the same
+    // every time. Returns false if the fleet cannot fit at all, or the search found nothing within its budget.
+    public boolean sample(RandomGenerator rand)
+    {
+        for (int attempt = 0; attempt < RANDOM_ATTEMPTS; attempt++)
+        {
+            reset();
+            if (sampleFromCurrent(rand))
+            {
+                return true;
+            }
+        }
+        reset();
+        return packLines() || searchLayout();
+    }
+    // the ships side by side in the rows, or else in the columns, longest first; false if they need more lines
+    private boolean packLines()
+    {
+        if (packInLines(fleetLengths, searchOrder, cols, rows, startRow, startCol))
+        {
+            Arrays.fill(horizontal, true);
+            return true;
+        }
+        if (packInLines(fleetLengths, searchOrder, rows, cols, startCol, startRow))
+        {
+            Arrays.fill(horizontal, false);
+            return true;
+        }
+        return false;
+    }
+    // the search from empty tables, with a fresh budget
+    private boolean searchLayout()
+    {
+        reset();
+        searchNodes = SEARCH_NODES;
+        return search(0, -1);
+    }
+    // one pass over the fleet from the current tables, false on a dead end
+    private boolean sampleFromCurrent(RandomGenerator rand)
+    {
+        for (int s = 0; s < fleetLengths.length; s++)
+        {
+            int placement = pick(fleetLengths[s], rand);
+            if (placement < 0)
+            {
+                return false;
+            }
+            record(s, placement);
+            place(startRow[s], startCol[s], fleetLengths[s], horizontal[s]);
+        }
+        return true;
+    }
+    private void record(int s, int placement)
+    {
+        int start = placement >> 1;
+        startRow[s] = start / cols;
+        startCol[s] = start % cols;
+        horizontal[s] = (placement & 1) == 0;
+    }
+    // Depth first search over every legal placement, decides whether the fleet fits. Ships are tried longest
+    // first, and ships of the same length only in increasing placement order since swapping them gives the same layout.
+    // Deterministic, so a fleet checkFits found a layout for is always placed.
+    private boolean search(int depth, int previous)
+    {
+        if (depth == searchOrder.length)
+        {
+            return true;
+        }
+        for (int d = depth; d < searchOrder.length; d++)
+        {
+            if (countLegal(fleetLengths[searchOrder[d]]) == 0)
+            {
+                return false;
+            }
+        }
+        int s = searchOrder[depth];
+        int length = fleetLengths[s];
+        boolean sameAsPrevious = depth > 0 && fleetLengths[searchOrder[depth - 1]] == length;
+        int total = countLegal(length);
+        long[][][] saved = saveTables();
+        int[][] savedCount = saveCounts();
+        for (int index = 0; index < total; index++)
+        {
+            int o = index < savedCount[0][length] ? 0 : 1;
+            int start = select(saved[o][length], o == 0 ? index : index - savedCount[0][length]);
+            int key = o * rows * cols + start;
+            if (sameAsPrevious && key <= previous)
+            {
+                continue;
+            }
+            if (--searchNodes < 0)
+            {
+                return false; // out of budget, treated as not fitting
+            }
+            record(s, start * 2 + o);
+            place(startRow[s], startCol[s], length, horizontal[s]);
+            if (search(depth + 1, key))
+            {
+                return true;
+            }
+            restoreTables(saved, savedCount);
+        }
+        return false;
+    }
+    private long[][][] saveTables()
+    {
+        long[][][] copy = new long[2][legal[0].length][];
+        for (int length : lengths)
+        {
+            copy[0][length] = legal[0][length].clone();
+            copy[1][length] = legal[1][length].clone();
+        }
+        return copy;
+    }
+    private int[][] saveCounts()
+    {
+        return new int[][]{legalCount[0].clone(), legalCount[1].clone()};
+    }
+    private void restoreTables(long[][][] saved, int[][] savedCount)
+    {
+        for (int length : lengths)
+        {
+            System.arraycopy(saved[0][length], 0, legal[0][length], 0, words);
+            System.arraycopy(saved[1][length], 0, legal[1][length], 0, words);
+        }
+        System.arraycopy(savedCount[0], 0, legalCount[0], 0, savedCount[0].length);
+        System.arraycopy(savedCount[1], 0, legalCount[1], 0, savedCount[1].length);
+    }
+
+    // Places the fleet on an empty board and adds the ships to the list, in fleet order
+    public void placeFleet(Board board, List<Ship> ships, RandomGenerator rand)
+    {
+        if (!sample(rand))
+        {
+            throw new IllegalArgumentException("fleet " + rules.getFleet() + " does not fit on a " + rows + "x" + cols + " board");
+        }
+        for (int s = 0; s < fleetLengths.length; s++)
+        {
+            board.placeShip(startRow[s], startCol[s], fleetLengths[s], horizontal[s]);
+            ships.add(new Ship(fleetLengths[s], startRow[s], startCol[s], horizontal[s]));
+        }
+    }
+
+    // Throws IllegalArgumentException if the fleet of the rules cannot be placed. Two quick tests settle almost
+    // every fleet: a bound that rules it out (L cells in a row or column cover every color (r + c) mod L once,
+    // so the ships cover at least the sum of length / L cells of each color, more than the rarest color may
+    // have), and a packing into rows or columns, longest ship first, that proves it fits. Only the tight
+    // fleets in between are searched, with the search budget.
+    static void checkFits(GameRules rules)
+    {
+        int rows = rules.getRows();
+        int cols = rules.getCols();
+        int[] lengths = rules.getFleet().getLengths();
+        for (int l = 2; l <= rules.getFleet().getMaxLength(); l++)
+        {
+            long needed = 0;
+            for (int length : lengths)
+            {
+                needed += length / l;
+            }
+            if (needed > rarestColor(rows, cols, l))
+            {
+                throw new IllegalArgumentException("fleet " + rules.getFleet() + " cannot be packed on " + rows + "x" + cols);
+            }
+        }
+        int[] order = java.util.stream.IntStream.range(0, lengths.length).boxed()
+                .sorted((a, b) -> lengths[b] - lengths[a]).mapToInt(Integer::intValue).toArray();
+        int[] line = new int[lengths.length];
+        int[] offset = new int[lengths.length];
+        if (packInLines(lengths, order, cols, rows, line, offset) || packInLines(lengths, order, rows, cols, line, offset))
+        {
+            return;
+        }
+        if (rules.isSparse() || !forRules(rules).searchLayout())
+        {
+            throw new IllegalArgumentException("no placement of fleet " + rules.getFleet() + " on " + rows + "x" + cols + " found");
+        }
+    }
+    // cells of the rarest color (r + c) mod l
+    private static long rarestColor(int rows, int cols, int l)
+    {
+        long rarest = Long.MAX_VALUE;
+        for (int k = 0; k < l; k++)
+        {
+            long count = 0;
+            for (int j = 0; j < l; j++)
+            {
+                long rowsOfJ = rows / l + (j < rows % l ? 1 : 0);
+                int i = (k - j + l) % l;
+                count += rowsOfJ * (cols / l + (i < cols % l ? 1 : 0));
+            }
+            rarest = Math.min(rarest, count);
+        }
+        return rarest;
+    }
+    // Lays the ships out in lines of lineLength one after the other, in the given order: line and offset in it of
+    // every ship (by fleet index). False if they need more than the lines there are.
+    private static boolean packInLines(int[] lengths, int[] order, int lineLength, int lines, int[] line, int[] offset)
+    {
+        int at = 0;
+        int used = 0;
+        for (int s : order)
+        {
+            if (lengths[s] > lineLength)
+            {
+                return false;
+            }
+            if (used + lengths[s] > lineLength)
+            {
+                at++;
+                used = 0;
+            }
+            if (at >= lines)
+            {
+                return false;
+            }
+            line[s] = at;
+            offset[s] = used;
+            used += lengths[s];
+        }
+        return true;
+    }
+
+    public int getStartRow(int ship)
+    {
+        return startRow[ship];
+    }
+    public int getStartCol(int ship)
+    {
+        return startCol[ship];
+    }
+    public boolean isHorizontal(int ship)
+    {
+        return horizontal[ship];
+    }
+
+    // clears bits from..to (inclusive), returns how many were set
+    private static int clearRange(long[] bits, int from, int to)
+    {
+        int cleared = 0;
+        for (int w = from >>> 6; w <= to >>> 6; w++)
+        {
+            long mask = -1L;
+            if (w == from >>> 6)
+            {
+                mask &= -1L << from;
+            }
+            if (w == to >>> 6)
+            {
+                mask &= -1L >>> (63 - (to & 63));
+            }
+            cleared += Long.bitCount(bits[w] & mask);
+            bits[w] &= ~mask;
+        }
+        return cleared;
+    }
+    // index of the k-th set bit (k from 0)
+    private static int select(long[] bits, int k)
+    {
+        for (int w = 0; w < bits.length; w++)
+        {
+            int n = Long.bitCount(bits[w]);
+            if (k < n)
+            {
+                long word = bits[w];
+                for (int j = 0; j < k; j++)
+                {
+                    word &= word - 1;
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            k -= n;
+        }
+        throw new IllegalStateException("fewer set bits than expected");
+    }
+}
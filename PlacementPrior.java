@@ -0,0 +1,184 @@
+// What the computer learned about one opponent's fleet placement: for every cell, how often that opponent had a
+// ship there, with recent games counting more (each game weighs 1 / DECAY times the one before, so old habits
+// fade). Read from the opponent's ships at the end of a game; an update touches only the fleet's cells (constant
+// time per game), the occasional rescale of the growing weights aside.
+// The hunt phase of the computer players multiplies its cell scores by getLikelihoodRatio: how much more often
+// than under uniform placement a ship covered the cell, pulled towards 1 while there are few games.
+// One memory mapped file per profile and board size in <data dir>/profiles, mapped on first use.
+// Layout: magic, version, rows, cols (ints), games (long), next game weight, sum of game weights (doubles),
+// then one float weight per cell, big endian.
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PlacementPrior
+{
+    private static final int MAGIC = 0x42535050; // "BSPP"
+    private static final int VERSION = 1;
+    private static final int GAMES_OFFSET = 16;
+    private static final int INCREMENT_OFFSET = 24;
+    private static final int WEIGHT_SUM_OFFSET = 32;
+    private static final int HEADER = 40;
+    private static final double DECAY = 0.9;           // weight of a game relative to the next one
+    private static final double RESCALE_ABOVE = 1e30;  // game weight at which all weights are scaled back
+    private static final double PRIOR_GAMES = 2;       // uniform placement counts as this many games
+    private static final Map<String, PlacementPrior> SHARED = new ConcurrentHashMap<>();
+
+    private final String profile;
+    private final GameRules rules;
+    private final Path file;
+    private final int cells;
+    private MappedByteBuffer map;  // null until first used
+    private boolean failed;
+    private double[] ratios;       // likelihood ratios, until the next game is added
+
+    public PlacementPrior(String profile, GameRules rules, Path file)
+    {
+        if (rules.isSparse())
+        {
+            throw new IllegalArgumentException("no placement prior for sparse boards");
+        }
+        this.profile = profile;
+        this.rules = rules;
+        this.file = file;
+        this.cells = (int) rules.getCells();
+    }
+
+    // profile used when none is given: -Dbattleship.profile=... or the name of the OS user
+    public static String defaultProfile()
+    {
+        return System.getProperty("battleship.profile", System.getProperty("user.name", "player"));
+    }
+    // prior of the profile for the board size in the data directory, null for sparse boards
+    public static PlacementPrior forProfile(String profile, GameRules rules)
+    {
+        if (rules.isSparse())
+        {
+            return null;
+        }
+        String name = profile.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + rules.getRows() + "x" + rules.getCols();
+        return SHARED.computeIfAbsent(name, key -> new PlacementPrior(profile, rules,
+                DecisionCache.dataDir().toPath().resolve("profiles").resolve(key + ".prior")));
+    }
+
+    public String getProfile()
+    {
+        return profile;
+    }
+
+    // maps the file, creating it if needed; false if it cannot be used
+    private boolean open()
+    {
+        if (map != null || failed)
+        {
+            return map != null;
+        }
+        long size = HEADER + 4L * cells;
+        try
+        {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                boolean fresh = channel.size() != size;
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (!fresh && (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                        || mapped.getInt(8) != rules.getRows() || mapped.getInt(12) != rules.getCols()))
+                {
+                    fresh = true;
+                }
+                if (fresh)
+                {
+                    channel.truncate(size);
+                    for (int i = 0; i < size; i += 4)
+                    {
+                        mapped.putInt(i, 0);
+                    }
+                    mapped.putInt(0, MAGIC);
+                    mapped.putInt(4, VERSION);
+                    mapped.putInt(8, rules.getRows());
+                    mapped.putInt(12, rules.getCols());
+                    mapped.putDouble(INCREMENT_OFFSET, 1);
+                }
+                map = mapped;
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            failed = true;
+            System.err.println("Placement prior " + file + " not available: " + e.getMessage());
+        }
+        return map != null;
+    }
+
+    // Adds the fleet the opponent played a finished game with
+    public synchronized void addGame(List<Ship> ships)
+    {
+        if (ships.isEmpty() || !open())
+        {
+            return;
+        }
+        int cols = rules.getCols();
+        double increment = map.getDouble(INCREMENT_OFFSET);
+        for (Ship ship : ships)
+        {
+            int step = ship.isHorizontal() ? 1 : cols;
+            for (int k = 0, cell = ship.getStartRow() * cols + ship.getStartCol(); k < ship.getLength(); k++, cell += step)
+            {
+                int at = HEADER + 4 * cell;
+                map.putFloat(at, (float) (map.getFloat(at) + increment));
+            }
+        }
+        map.putLong(GAMES_OFFSET, map.getLong(GAMES_OFFSET) + 1);
+        map.putDouble(WEIGHT_SUM_OFFSET, map.getDouble(WEIGHT_SUM_OFFSET) + increment);
+        increment /= DECAY;
+        if (increment > RESCALE_ABOVE)
+        {
+            // only the ratios between the weights matter
+            for (int cell = 0; cell < cells; cell++)
+            {
+                int at = HEADER + 4 * cell;
+                map.putFloat(at, (float) (map.getFloat(at) / increment));
+            }
+            map.putDouble(WEIGHT_SUM_OFFSET, map.getDouble(WEIGHT_SUM_OFFSET) / increment);
+            increment = 1;
+        }
+        map.putDouble(INCREMENT_OFFSET, increment);
+        ratios = null;
+    }
+
+    public synchronized long getGames()
+    {
+        return open() ? map.getLong(GAMES_OFFSET) : 0;
+    }
+
+    // Per cell: smoothed share of the games with a ship on the cell, divided by the share under uniform
+    // placement. All 1 before the first game. The array is shared, do not change it.
+    public synchronized double[] getLikelihoodRatios()
+    {
+        if (ratios != null)
+        {
+            return ratios;
+        }
+        double[] result = new double[cells];
+        java.util.Arrays.fill(result, 1);
+        if (open() && map.getLong(GAMES_OFFSET) > 0)
+        {
+            double uniform = (double) rules.getFleet().getTotalCells() / cells;
+            double weightSum = map.getDouble(WEIGHT_SUM_OFFSET);
+            // a decayed history is worth about this many games
+            double games = Math.min(map.getLong(GAMES_OFFSET), 1 / (1 - DECAY));
+            for (int cell = 0; cell < cells; cell++)
+            {
+                double share = map.getFloat(HEADER + 4 * cell) / weightSum;
+                result[cell] = (share * games + uniform * PRIOR_GAMES) / ((games + PRIOR_GAMES) * uniform);
+            }
+        }
+        ratios = result;
+        return result;
+    }
+}
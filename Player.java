@@ -3,13 +3,45 @@
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 abstract class Player implements Serializable
 {
+    public static final int NO_SHOT = -1;
     protected ArrayList<Ship> ships = new ArrayList<Ship>();
-    protected Board board = new Board();
-    private Random rand = new Random();
+    protected GameRules rules;
+    protected Board board;
+    private transient RandomGenerator rand = new SplittableRandom(); // placement and AI decisions, see setRandom
+    private transient long plannedShot = NO_SHOT;  // chosen ahead of the turn by planShot
+    private transient Board plannedBoard;
+    private transient int plannedVersion;
+    public Player()
+    {
+        this(GameRules.STANDARD);
+    }
+    public Player(GameRules rules)
+    {
+        this.rules = rules;
+        board = new Board(rules);
+    }
+    public GameRules getRules()
+    {
+        return rules;
+    }
+    // Every random choice of this player comes from this generator, a seeded one makes the player deterministic
+    public void setRandom(RandomGenerator rand)
+    {
+        this.rand = rand;
+    }
+    protected RandomGenerator getRandom()
+    {
+        if (rand == null)
+        {
+            rand = new SplittableRandom(); // not serialized
+        }
+        return rand;
+    }
     public Board getBoard() 
     { 
         return board;
@@ -19,6 +51,11 @@ abstract class Player implements Serializable
     {
         return board.getInfoGrid();
     }
+    // ships and cells still afloat, kept up to date by the board
+    public FleetStatus getFleetStatus()
+    {
+        return board.getFleetStatus();
+    }
     public void addShip(Ship s) // adds ship to arrayList
     { 
         ships.add(s); 
@@ -28,9 +65,9 @@ abstract class Player implements Serializable
         boolean placed = false;
         while (!placed) 
         {
-            boolean horizontal = rand.nextBoolean(); // randomly chooses if horizontal
-            int r = rand.nextInt(Board.SIZE);        // randomly chooses row
-            int c = rand.nextInt(Board.SIZE);        // randomly chooses column
+            boolean horizontal = getRandom().nextBoolean(); // randomly chooses if horizontal
+            int r = getRandom().nextInt(rules.getRows());   // randomly chooses row
+            int c = getRandom().nextInt(rules.getCols());   // randomly chooses column
             if (board.canPlaceShip(r, c, length, horizontal)) // checks if ship would stay in bounds if placed there
             {
                 board.placeShip(r, c, length, horizontal);      // updates shipGrid array
@@ -42,10 +79,15 @@ abstract class Player implements Serializable
     }
     public void placeShipsAutomatically() 
     {
-        int[] shipSizes = {5, 4, 3, 2}; // every user has 5 ships, this lists their sizes
-        for (int size : shipSizes) 
+        if (!rules.isSparse())
+        {
+            PlacementEngine.forRules(rules).placeFleet(board, ships, getRandom()); // draws from the legal placements
+            return;
+        }
+        FleetSpec fleet = rules.getFleet(); // every user places the same fleet, this lists their sizes
+        for (int i = 0; i < fleet.size(); i++) 
         {
-            placeShipAutomatically(size); // place each ship of size in shipSizes array
+            placeShipAutomatically(fleet.getLength(i)); // giant boards are almost empty, random tries are enough
         }
     }
     public ArrayList<Ship> getShips() 
@@ -58,5 +100,125 @@ abstract class Player implements Serializable
         ships.clear();
         board.reset();
     }
-    public abstract int[] chooseShot(char [][] opponentBoard); 
+    // Shot selection with a primitive result: the packed cell (row * cols + col) to shoot, or NO_SHOT. A long,
+    // sparse boards have more cells than an int holds (dense boards never do, their cells can be narrowed).
+    // Only the shot information of the opponent's board (hit, miss, destroyed, sunk counts) may be used.
+    public abstract long chooseShotCell(Board opponentBoard);
+    // Chooses the next shot ahead of the turn, for example on a worker thread while the GUI waits.
+    // The turn then takes it as long as the board did not change in between.
+    public void planShot(Board opponentBoard)
+    {
+        long shot = chooseShotCell(opponentBoard);
+        plannedVersion = opponentBoard.getInfoVersion();
+        plannedBoard = opponentBoard;
+        plannedShot = shot;
+    }
+    // Shot for this turn: the planned one if it is still valid, otherwise chooseShotCell
+    final long nextShot(Board opponentBoard)
+    {
+        long shot = plannedShot;
+        plannedShot = NO_SHOT;
+        if (shot != NO_SHOT && plannedBoard == opponentBoard && plannedVersion == opponentBoard.getInfoVersion())
+        {
+            plannedBoard = null;
+            return shot;
+        }
+        plannedBoard = null;
+        return chooseShotCell(opponentBoard);
+    }
+    // Called by the game after every shot of this player with the result (Board.MISS, HIT or SUNK),
+    // players that keep their own view of the opponent update it here
+    public void onShotResult(Board opponentBoard, long cell, int result)
+    {
+    }
+    // Called by the game after the opponent shot at this player's board, with the result
+    public void onShotReceived(long cell, int result)
+    {
+    }
+    // Called by the game once it is over, won is true for the winner; the opponent's fleet may be looked at now
+    public void onGameOver(Player opponent, boolean won)
+    {
+    }
+    // Older array based API, kept as an adapter over chooseShotCell. The grid has no ships, so the view's fleet
+    // status is rebuilt from the rules: the whole fleet, minus the ships the 'D' cells show as sunk.
+    public int[] chooseShot(char [][] opponentBoard)
+    {
+        Board view = new Board(rules);
+        for (int r = 0; r < opponentBoard.length; r++)
+        {
+            for (int c = 0; c < opponentBoard[r].length; c++)
+            {
+                view.setInfoGrid(r, c, opponentBoard[r][c]);
+            }
+        }
+        view.restoreFleetStatus(sunkLengths(opponentBoard));
+        long cell = chooseShotCell(view);
+        if (cell == NO_SHOT)
+        {
+            return null;
+        }
+        return new int[]{(int) (cell / rules.getCols()), (int) (cell % rules.getCols())};
+    }
+    // Lengths of the ships the 'D' cells of a grid show as sunk. Each straight run of 'D' cells (the longer way
+    // from its first cell) is split into fleet lengths not yet accounted for, longest first; where sunk ships
+    // touch, the split is a guess, but the sunk cells always add up.
+    private int[] sunkLengths(char[][] grid)
+    {
+        int[] left = new int[FleetSpec.MAX_SHIP_LENGTH + 1];
+        for (int length : rules.getFleet().getLengths())
+        {
+            left[length]++;
+        }
+        boolean[][] counted = new boolean[grid.length][];
+        for (int r = 0; r < grid.length; r++)
+        {
+            counted[r] = new boolean[grid[r].length];
+        }
+        ArrayList<Integer> sunk = new ArrayList<>();
+        for (int r = 0; r < grid.length; r++)
+        {
+            for (int c = 0; c < grid[r].length; c++)
+            {
+                if (grid[r][c] != 'D' || counted[r][c])
+                {
+                    continue;
+                }
+                int across = 0;
+                while (c + across < grid[r].length && grid[r][c + across] == 'D' && !counted[r][c + across])
+                {
+                    across++;
+                }
+                int down = 0;
+                while (r + down < grid.length && c < grid[r + down].length && grid[r + down][c] == 'D' && !counted[r + down][c])
+                {
+                    down++;
+                }
+                int run = Math.max(across, down);
+                for (int i = 0; i < run; i++)
+                {
+                    counted[across >= down ? r : r + i][across >= down ? c + i : c] = true;
+                }
+                for (int length = Math.min(run, FleetSpec.MAX_SHIP_LENGTH); length > 0 && run > 0; )
+                {
+                    if (left[length] > 0)
+                    {
+                        left[length]--;
+                        sunk.add(length);
+                        run -= length;
+                        length = Math.min(length, run);
+                    }
+                    else
+                    {
+                        length--;
+                    }
+                }
+            }
+        }
+        int[] lengths = new int[sunk.size()];
+        for (int i = 0; i < lengths.length; i++)
+        {
+            lengths[i] = sunk.get(i);
+        }
+        return lengths;
+    }
 }
\ No newline at end of file
@@ -6,22 +6,29 @@ import java.io.Serializable;
 public class Ship implements Serializable
 {
     private int length;             // length of ship
-    private int hits;               // number of times ship has been hit
+    private long hitMask;           // bit i is set once the i-th cell of the ship has been hit
     private int startRow, startCol; //start grid
-    private boolean horizontal;     //direction 
+    private boolean horizontal;     //direction
 
-    public Ship(int l, int r, int c, boolean h) 
+    public Ship(int l, int r, int c, boolean h)
     {
         length = l;
         startRow = r;
         startCol = c;
         horizontal = h;
-        hits = 0;
+        hitMask = 0;
     }
 
-    public void hit() 
+    // marks the cell as hit, returns false if it was not part of the ship or was already hit
+    public boolean hit(int r, int c)
     {
-         hits++; 
+        int i = offsetOf(r, c);
+        if (i < 0 || (hitMask & (1L << i)) != 0)
+        {
+            return false;
+        }
+        hitMask |= 1L << i;
+        return true;
     }
     public int getLength()
     {
@@ -40,40 +47,36 @@ public class Ship implements Serializable
         return startCol;
     }
     public boolean isSunk()
-    { 
-        return hits >= length; 
+    {
+        return getHits() >= length;
     }
-    
-    public int getHits() 
+
+    public int getHits()
     {
-        return hits;
+        return Long.bitCount(hitMask);
     }
-    
-    public void setHits(int h) 
+
+    // only the number of hits is known here, so the first h cells are marked
+    public void setHits(int h)
     {
-        hits = h;
+        hitMask = h >= 64 ? -1L : (1L << Math.max(h, 0)) - 1;
     }
 
-    //check if a ship on that cell ()
-    public boolean occupies(int r, int c)
+    // index of (r, c) along the ship or -1 if the ship is not on that cell
+    public int offsetOf(int r, int c)
     {
-        for (int i = 0; i < length; i++) 
+        int i = horizontal ? c - startCol : r - startRow;
+        int across = horizontal ? r - startRow : c - startCol;
+        if (across != 0 || i < 0 || i >= length)
         {
-            int currentRow = startRow;
-            int currentCol = startCol;
-            if(horizontal)
-            {
-                currentCol += i;
-            }
-            else
-            {
-                currentRow +=i;
-            }
-            if (currentRow == r && currentCol == c)
-            {
-                return true;
-            }
+            return -1;
         }
-        return false;
+        return i;
+    }
+
+    //check if a ship on that cell ()
+    public boolean occupies(int r, int c)
+    {
+        return offsetOf(r, c) >= 0;
     }
-}
\ No newline at end of file
+}
@@ -17,10 +17,11 @@ public class ShipPlacementScreen extends JFrame
     private JButton clearButton;
     private boolean isPlayer1;
     private Runnable onComplete;
+    private GameRules rules;
     
-    // Ship sizes and display information for battleship
-    private int[] shipSizes = {5, 4, 3, 2};
-    private String[] shipNames = {"Carrier (5)", "Battleship (4)", "Cruiser (3)", "Destroyer (2)"};
+    // Ship sizes and display information for battleship, taken from the fleet in the rules
+    private int[] shipSizes;
+    private String[] shipNames;
     private Color[] shipColors = {
         new Color(50, 100, 200),   // Blue
         new Color(100, 200, 100),  // Green
@@ -30,10 +31,22 @@ public class ShipPlacementScreen extends JFrame
     };
 
     public ShipPlacementScreen(boolean isP1, Runnable onComp) 
+    {
+        this(GameRules.STANDARD, isP1, onComp);
+    }
+    public ShipPlacementScreen(GameRules rules, boolean isP1, Runnable onComp) 
     {
         isPlayer1 = isP1;
         onComplete = onComp;
-        this.board = new Board();
+        this.rules = rules;
+        FleetSpec fleet = rules.getFleet();
+        shipSizes = fleet.getLengths();
+        shipNames = new String[fleet.size()];
+        for (int i = 0; i < fleet.size(); i++) 
+        {
+            shipNames[i] = fleet.getName(i) + " (" + fleet.getLength(i) + ")";
+        }
+        this.board = new Board(rules);
         this.ships = new ArrayList<>();
         setTitle("Ship Placement - Player " + (isPlayer1 ? "1" : "2"));
         setSize(1000, 700);
@@ -104,26 +117,7 @@ public class ShipPlacementScreen extends JFrame
     private void placeShipsRandomly() 
     {
         clearAllShips();
-        java.util.Random rand = new java.util.Random();
-        for (int i = 0; i < shipSizes.length; i++) 
-        {
-            int size = shipSizes[i];
-            boolean placed = false;
-            // Keep trying random positions until ship fits
-            while (!placed) 
-            {
-                boolean horizontal = rand.nextBoolean();
-                int r = rand.nextInt(Board.SIZE);
-                int c = rand.nextInt(Board.SIZE);
-                if (board.canPlaceShip(r, c, size, horizontal)) 
-                {
-                    board.placeShip(r, c, size, horizontal);
-                    Ship s = new Ship(size, r, c, horizontal);
-                    ships.add(s);
-                    placed = true;
-                }
-            }
-        }
+        PlacementEngine.forRules(rules).placeFleet(board, ships, new java.util.Random());
         
         boardPanel.repaint();
         shipPanel.allShipsPlaced();
@@ -151,20 +145,20 @@ public class ShipPlacementScreen extends JFrame
         return ships;
     }
     
-    // Panel displaying the 10x10 game board for ship placement
+    // Panel displaying the game board (rows x cols from the rules) for ship placement
     private class BoardPanel extends JPanel 
     {
-        private CellButton[][] buttons = new CellButton[10][10];
+        private CellButton[][] buttons = new CellButton[rules.getRows()][rules.getCols()];
         private DraggableShipComponent draggedShip = null;
         public BoardPanel() 
         {
-            setLayout(new GridLayout(10, 10));
+            setLayout(new GridLayout(rules.getRows(), rules.getCols()));
             setBorder(BorderFactory.createLineBorder(Color.BLACK, 2));
             setPreferredSize(new Dimension(500, 500));
             // Create all cell buttons
-            for (int r = 0; r < 10; r++) 
+            for (int r = 0; r < rules.getRows(); r++) 
             {
-                for (int c = 0; c < 10; c++) 
+                for (int c = 0; c < rules.getCols(); c++) 
                 {
                     CellButton btn = new CellButton(r, c);
                     btn.setBackground(Color.WHITE);
@@ -284,7 +278,7 @@ public class ShipPlacementScreen extends JFrame
             for (int i = 0; i < shipSizes.length; i++) 
             {
                 ShipContainer container = new ShipContainer(
-                    shipSizes[i], shipNames[i], shipColors[i]
+                    shipSizes[i], shipNames[i], shipColors[i % shipColors.length]
                 );
                 container.setMaximumSize(new Dimension(200, 100));
                 container.setAlignmentX(Component.LEFT_ALIGNMENT);
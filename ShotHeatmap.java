@@ -0,0 +1,198 @@
+// Where opponents shoot first, learned over games and kept on disk, used by the computer to place its fleet where
+// the early shots rarely go. Every game adds, for each of the first shots at the computer's board, a weight to the
+// cell shot that falls with the shot's order (horizon - order, horizon a quarter of the cells). A cell's share of
+// that weight estimates how likely it is to be hit early, and the expected early hits of a layout is the sum over
+// its cells, so the fleet is placed as the best of a number of random layouts by that sum. Still random, just
+// biased away from the favourite targets.
+// One small file per board size in the data directory, memory mapped: a game costs one write per shot it counts,
+// and nothing is read or mapped before the first placement or finished game needs it.
+// Layout: magic, version, rows, cols (ints), games (long), then one int weight per cell, big endian.
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+
+public class ShotHeatmap
+{
+    private static final int MAGIC = 0x4253484d; // "BSHM"
+    private static final int VERSION = 1;
+    private static final int HEADER = 24;
+    private static final int GAMES_OFFSET = 16;
+    public static final int MIN_GAMES = 3;        // fewer and the fleet is placed uniformly
+    public static final int CANDIDATES = 200;     // random layouts compared per placement
+    private static final Map<GameRules, ShotHeatmap> SHARED = new ConcurrentHashMap<>();
+
+    private final GameRules rules;
+    private final Path file;
+    private final int cells;
+    private final int horizon;
+    private MappedByteBuffer map;  // null until first used
+    private boolean failed;        // the file could not be used, the heatmap stays empty
+
+    public ShotHeatmap(GameRules rules, Path file)
+    {
+        if (rules.isSparse())
+        {
+            throw new IllegalArgumentException("no heatmap for sparse boards");
+        }
+        this.rules = rules;
+        this.file = file;
+        this.cells = (int) rules.getCells();
+        this.horizon = Math.max(1, cells / 4);
+    }
+
+    // heatmap of the board size in the data directory, null for sparse boards
+    public static ShotHeatmap shared(GameRules rules)
+    {
+        if (rules.isSparse())
+        {
+            return null;
+        }
+        return SHARED.computeIfAbsent(rules, r -> new ShotHeatmap(r,
+                DecisionCache.dataDir().toPath().resolve("heatmap-" + r.getRows() + "x" + r.getCols() + ".bin")));
+    }
+
+    // maps the file, creating it if needed; false if it cannot be used
+    private boolean open()
+    {
+        if (map != null || failed)
+        {
+            return map != null;
+        }
+        long size = HEADER + 4L * cells;
+        try
+        {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                boolean fresh = channel.size() != size;
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); // stays valid after close
+                if (!fresh && (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION
+                        || mapped.getInt(8) != rules.getRows() || mapped.getInt(12) != rules.getCols()))
+                {
+                    fresh = true;
+                }
+                if (fresh)
+                {
+                    channel.truncate(size); // in case an older, larger file was there
+                    for (int i = 0; i < size; i += 4)
+                    {
+                        mapped.putInt(i, 0);
+                    }
+                    mapped.putInt(0, MAGIC);
+                    mapped.putInt(4, VERSION);
+                    mapped.putInt(8, rules.getRows());
+                    mapped.putInt(12, rules.getCols());
+                }
+                map = mapped;
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            failed = true;
+            System.err.println("Shot heatmap " + file + " not available: " + e.getMessage());
+        }
+        return map != null;
+    }
+
+    // Adds a game: the cells the opponent shot, in order (a cell shot again after an undo counts once, first time)
+    public synchronized void addGame(int[] shots, int count)
+    {
+        if (count == 0 || !open())
+        {
+            return;
+        }
+        long[] seen = new long[(cells + 63) >>> 6];
+        int order = 0;
+        for (int i = 0; i < count && order < horizon; i++)
+        {
+            int cell = shots[i];
+            if ((seen[cell >>> 6] & (1L << cell)) != 0)
+            {
+                continue;
+            }
+            seen[cell >>> 6] |= 1L << cell;
+            int at = HEADER + 4 * cell;
+            map.putInt(at, map.getInt(at) + horizon - order);
+            order++;
+        }
+        map.putLong(GAMES_OFFSET, map.getLong(GAMES_OFFSET) + 1);
+    }
+
+    public synchronized long getGames()
+    {
+        return open() ? map.getLong(GAMES_OFFSET) : 0;
+    }
+    // weight of the cell, higher for cells shot earlier and more often
+    public synchronized int getWeight(int cell)
+    {
+        return open() ? map.getInt(HEADER + 4 * cell) : 0;
+    }
+    // true once enough games were seen to place by it
+    public boolean isTrained()
+    {
+        return getGames() >= MIN_GAMES;
+    }
+
+    // Places the fleet on an empty board, adding the ships to the list: the random layout with the fewest
+    // expected early hits out of CANDIDATES. Uniform while the heatmap is not trained yet.
+    public void placeFleet(Board board, List<Ship> ships, RandomGenerator rand)
+    {
+        PlacementEngine engine = PlacementEngine.forRules(rules);
+        int[] weights = new int[cells];
+        synchronized (this)
+        {
+            if (getGames() < MIN_GAMES)
+            {
+                engine.placeFleet(board, ships, rand);
+                return;
+            }
+            for (int cell = 0; cell < cells; cell++)
+            {
+                weights[cell] = map.getInt(HEADER + 4 * cell);
+            }
+        }
+        int fleet = rules.getFleet().size();
+        int cols = rules.getCols();
+        int[] best = new int[fleet * 3];
+        long bestScore = Long.MAX_VALUE;
+        for (int candidate = 0; candidate < CANDIDATES; candidate++)
+        {
+            if (!engine.sample(rand))
+            {
+                throw new IllegalArgumentException("fleet " + rules.getFleet() + " does not fit on " + rules.getRows() + "x" + cols);
+            }
+            long score = 0;
+            for (int s = 0; s < fleet; s++)
+            {
+                int step = engine.isHorizontal(s) ? 1 : cols;
+                for (int k = 0, cell = engine.getStartRow(s) * cols + engine.getStartCol(s); k < rules.getFleet().getLength(s); k++, cell += step)
+                {
+                    score += weights[cell];
+                }
+            }
+            if (score < bestScore)
+            {
+                bestScore = score;
+                for (int s = 0; s < fleet; s++)
+                {
+                    best[3 * s] = engine.getStartRow(s);
+                    best[3 * s + 1] = engine.getStartCol(s);
+                    best[3 * s + 2] = engine.isHorizontal(s) ? 1 : 0;
+                }
+            }
+        }
+        for (int s = 0; s < fleet; s++)
+        {
+            int length = rules.getFleet().getLength(s);
+            boolean horizontal = best[3 * s + 2] == 1;
+            board.placeShip(best[3 * s], best[3 * s + 1], length, horizontal);
+            ships.add(new Ship(length, best[3 * s], best[3 * s + 1], horizontal));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+// How a computer player picks its shots. The computer players implement it (ComputerPlayer and its subclasses),
+// StrategyPlayer runs one in a game behind a latency budget.
+// Strategies are offered through a Provider: the built-in difficulty presets are in StrategyRegistry, more can be
+// added without touching the game by listing Provider classes (public, no-argument constructor) in
+// META-INF/services/ShotStrategy$Provider on the class path.
+
+import java.util.random.RandomGenerator;
+
+public interface ShotStrategy
+{
+    // packed cell (row * cols + col, see Player.chooseShotCell) to shoot, or Player.NO_SHOT; only the shot
+    // information of the view may be used
+    long chooseShotCell(Board opponentBoard);
+
+    // result of the last shot (Board.MISS, HIT or SUNK), for strategies keeping their own view of the opponent
+    default void onShotResult(Board opponentBoard, long cell, int result)
+    {
+    }
+
+    // every random choice of the strategy should come from this generator
+    default void setRandom(RandomGenerator rand)
+    {
+    }
+
+    // A named strategy with the settings it is played with
+    interface Provider
+    {
+        // shown in the menus and used to find the provider again, unique
+        String getName();
+
+        String getDescription();
+
+        // orders the presets from easy to hard
+        int getLevel();
+
+        // time one decision may take before the cheap fallback plays instead, <= 0 for no limit
+        long getBudgetMillis();
+
+        ShotStrategy create(GameRules rules);
+
+        // The strategy with a fixed amount of work per decision and no wall-clock deadline, so a seeded game
+        // plays the same on any machine under any load (what Arena plays). Only strategies that stop on a
+        // deadline need to override it.
+        default ShotStrategy createFixed(GameRules rules)
+        {
+            return create(rules);
+        }
+    }
+}
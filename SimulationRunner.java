@@ -0,0 +1,350 @@
+// Headless computer vs computer games, for tuning the AI without the GUI.
+// The games are split over a fork/join pool; every leaf task plays its games with local counters and
+// adds them to the shared LongAdders once at the end, so the threads never wait on each other.
+// Every game is seeded from the master seed and its index, so a batch gives the same games whatever the
+// thread count; the checksum over the shot sequences of all games shows that a rerun matched.
+// With an archive every game is also added to it, in index order: game i of the seed is record i of the archive.
+// Every leaf task encodes the records of its games, the blocks are appended once the games before them are in.
+// Usage: java SimulationRunner [games] [threads] [seed] [verify] [archive=file.bsa]
+
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+public class SimulationRunner
+{
+    private static final int GAMES_PER_TASK = 256; // leaf size of the fork/join split
+
+    private final GameRules rules;
+    private final Function<GameRules, Player> first;  // player 1, always shoots first
+    private final Function<GameRules, Player> second;
+    private GameArchive.Writer archive; // null if the games are not kept
+    private final TreeMap<Integer, byte[][]> waiting = new TreeMap<>(); // archive blocks by first game, not yet appended
+    private int nextArchived;                                           // first game not appended yet
+
+    public SimulationRunner(GameRules rules, Function<GameRules, Player> first, Function<GameRules, Player> second)
+    {
+        this.rules = rules;
+        this.first = first;
+        this.second = second;
+    }
+    public SimulationRunner()
+    {
+        this(GameRules.STANDARD, ComputerPlayer::new, ComputerPlayer::new);
+    }
+
+    // Adds every game played from now on to the archive, null to stop
+    public void setArchive(GameArchive.Writer archive)
+    {
+        this.archive = archive;
+    }
+
+    // Plays games 0 to games - 1 of the seed on a pool with the given number of threads
+    public Result run(int games, int threads, long seed)
+    {
+        Result result = new Result(seed);
+        synchronized (waiting)
+        {
+            waiting.clear();
+            nextArchived = 0;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            pool.invoke(new Batch(0, games, seed, result));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    // Seed of game number index of a batch (SplitMix64 finalizer over the master seed and the index)
+    public static long gameSeed(long seed, long index)
+    {
+        long z = seed + (index + 1) * 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Plays game number index of the seed again, returns its shot sequence hash
+    public long replay(long seed, long index)
+    {
+        return newGame(seed, index).play();
+    }
+
+    private Game newGame(long seed, long index)
+    {
+        GameController controller = new GameController(first.apply(rules), second.apply(rules));
+        controller.setRandom(new SplittableRandom(gameSeed(seed, index)));
+        controller.setupGame();
+        return new Game(controller, archive != null);
+    }
+
+    private static class Game
+    {
+        final GameController controller;
+        final int[] shots; // in order, only kept for the archive
+        int turns;
+
+        Game(GameController controller, boolean keepShots)
+        {
+            this.controller = controller;
+            this.shots = keepShots ? new int[2 * (int) controller.getRules().getCells()] : null;
+        }
+
+        // plays to the end, returns the shot sequence hash
+        long play()
+        {
+            while (true)
+            {
+                String outcome = controller.takeTurn();
+                if (shots != null && !outcome.equals("noMove"))
+                {
+                    shots[turns] = (int) controller.getLastShot(); // archives are dense boards only
+                }
+                turns++;
+                if (outcome.equals("gameOver"))
+                {
+                    return controller.getShotSequenceHash();
+                }
+                if (outcome.equals("noMove"))
+                {
+                    throw new IllegalStateException("computer player did not choose a shot");
+                }
+            }
+        }
+    }
+
+    // Plays one game to the end, returns the number of turns; the counters of the batch are updated, and the
+    // record of the game is put into records[slot] if there is an archive
+    private int play(long seed, long index, Counters counters, byte[][] records, int slot)
+    {
+        Game game = newGame(seed, index);
+        long hash = game.play();
+        GameController controller = game.controller;
+        GameArchive.Writer keep = archive;
+        if (keep != null && records != null && game.shots != null)
+        {
+            records[slot] = keep.encode(controller.getPlayer1(), controller.getPlayer2(), true, game.shots, game.turns);
+        }
+        // the winner is still the current player, its shots are the ones on the loser's board
+        counters.winnerShots += controller.getOpponent().getBoard().countShots();
+        counters.turns += game.turns;
+        if (controller.getCurrentPlayer() == controller.getPlayer1())
+        {
+            counters.firstPlayerWins++;
+        }
+        counters.games++;
+        counters.checksum += gameSeed(hash, index); // a sum, so the order the games finish in does not matter
+        return game.turns;
+    }
+
+    // Appends the records of games from, from + 1, ... once every game before them is in, and the blocks waiting for them
+    private void archive(int from, byte[][] records)
+    {
+        synchronized (waiting)
+        {
+            waiting.put(from, records);
+            while (!waiting.isEmpty() && waiting.firstKey() == nextArchived)
+            {
+                byte[][] block = waiting.pollFirstEntry().getValue();
+                GameArchive.Writer keep = archive;
+                for (byte[] record : block)
+                {
+                    if (keep != null && record != null)
+                    {
+                        keep.append(record);
+                    }
+                }
+                nextArchived += block.length;
+            }
+        }
+    }
+
+    // counters of one leaf task, only touched by the thread running it
+    private static class Counters
+    {
+        long games, turns, winnerShots, firstPlayerWins, checksum;
+        long minTurns = Long.MAX_VALUE, maxTurns;
+    }
+
+    private class Batch extends RecursiveAction
+    {
+        private final int from, to;
+        private final long seed;
+        private final Result result;
+
+        Batch(int from, int to, long seed, Result result)
+        {
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > GAMES_PER_TASK)
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batch(from, middle, seed, result), new Batch(middle, to, seed, result));
+                return;
+            }
+            Counters counters = new Counters();
+            byte[][] records = archive != null ? new byte[to - from][] : null;
+            for (int i = from; i < to; i++)
+            {
+                int turns = play(seed, i, counters, records, i - from);
+                counters.minTurns = Math.min(counters.minTurns, turns);
+                counters.maxTurns = Math.max(counters.maxTurns, turns);
+            }
+            result.add(counters);
+            if (records != null)
+            {
+                archive(from, records);
+            }
+        }
+    }
+
+    // Totals of a run, safe to read while it is still going
+    public static class Result
+    {
+        private final long seed;
+        private final LongAdder checksum = new LongAdder();
+        private final LongAdder games = new LongAdder();
+        private final LongAdder turns = new LongAdder();
+        private final LongAdder winnerShots = new LongAdder();
+        private final LongAdder firstPlayerWins = new LongAdder();
+        private final LongAccumulator minTurns = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator maxTurns = new LongAccumulator(Math::max, 0);
+
+        Result(long seed)
+        {
+            this.seed = seed;
+        }
+
+        private void add(Counters counters)
+        {
+            checksum.add(counters.checksum);
+            games.add(counters.games);
+            turns.add(counters.turns);
+            winnerShots.add(counters.winnerShots);
+            firstPlayerWins.add(counters.firstPlayerWins);
+            minTurns.accumulate(counters.minTurns);
+            maxTurns.accumulate(counters.maxTurns);
+        }
+
+        public long getSeed()
+        {
+            return seed;
+        }
+        // combines the shot sequences of all games, equal for two runs of the same seed and game count
+        public long getChecksum()
+        {
+            return checksum.sum();
+        }
+        public long getGames()
+        {
+            return games.sum();
+        }
+        public long getTurns()
+        {
+            return turns.sum();
+        }
+        public double getAverageTurns()
+        {
+            return (double) turns.sum() / Math.max(1, games.sum());
+        }
+        // shots the winner needed to sink the whole fleet
+        public double getAverageShotsToWin()
+        {
+            return (double) winnerShots.sum() / Math.max(1, games.sum());
+        }
+        public double getFirstPlayerWinRate()
+        {
+            return (double) firstPlayerWins.sum() / Math.max(1, games.sum());
+        }
+        public long getMinTurns()
+        {
+            return minTurns.get();
+        }
+        public long getMaxTurns()
+        {
+            return maxTurns.get();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        boolean verify = args.length > 3 && args[3].equals("verify");
+        String archiveFile = null;
+        for (int i = 3; i < args.length; i++)
+        {
+            if (args[i].startsWith("archive="))
+            {
+                archiveFile = args[i].substring("archive=".length());
+            }
+        }
+        SimulationRunner runner = new SimulationRunner();
+        GameArchive.Writer archive = null;
+        if (archiveFile != null)
+        {
+            try
+            {
+                archive = GameArchive.create(java.nio.file.Paths.get(archiveFile), runner.rules);
+            }
+            catch (java.io.IOException e)
+            {
+                System.err.println("Cannot create archive " + archiveFile + ": " + e.getMessage());
+                System.exit(1);
+            }
+            runner.setArchive(archive);
+        }
+        long start = System.nanoTime();
+        Result result = runner.run(games, threads, seed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (archive != null)
+        {
+            runner.setArchive(null); // the verify run is not archived
+            try
+            {
+                archive.close();
+                System.out.printf("archive:           %d games, %d bytes in %s%n", archive.size(),
+                        java.nio.file.Files.size(java.nio.file.Paths.get(archiveFile)), archiveFile);
+            }
+            catch (java.io.IOException e)
+            {
+                System.err.println("Cannot write archive " + archiveFile + ": " + e.getMessage());
+            }
+        }
+        System.out.printf("games:             %d on %d threads in %.2f s (%.0f games/min)%n",
+                result.getGames(), threads, seconds, result.getGames() / seconds * 60);
+        System.out.printf("shots to win:      %.2f%n", result.getAverageShotsToWin());
+        System.out.printf("turns per game:    %.2f (min %d, max %d)%n",
+                result.getAverageTurns(), result.getMinTurns(), result.getMaxTurns());
+        System.out.printf("first player wins: %.2f%%%n", result.getFirstPlayerWinRate() * 100);
+        System.out.printf("seed:              %d (checksum %016x)%n", result.getSeed(), result.getChecksum());
+        if (verify)
+        {
+            // same seed on a single thread, must give the same shot sequences
+            Result replayed = runner.run(games, 1, seed);
+            boolean same = replayed.getChecksum() == result.getChecksum();
+            System.out.println("replay:            " + (same ? "identical" : "DIFFERENT"));
+            if (!same)
+            {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -13,6 +13,9 @@ public class StartScreen extends JFrame {
     private Player player2;
     private GameController controller;
     private boolean vsComputer;
+    private GameRules rules = GameRules.STANDARD;
+    private String difficulty = StrategyRegistry.DEFAULT; // strategy the computer plays
+    private JTextField profileField; // who plays against the computer, it learns each profile's placement habits
 
     public StartScreen() {
         setTitle("Battleship - Start");
@@ -58,10 +61,15 @@ public class StartScreen extends JFrame {
         humanButton.setMaximumSize(new Dimension(360, 48));
         computerButton.setMaximumSize(new Dimension(360, 48));
         loadButton.setMaximumSize(new Dimension(360, 48));
+        JPanel difficultyPanel = createDifficultyPanel();
+        difficultyPanel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        difficultyPanel.setMaximumSize(new Dimension(560, 36));
         buttonPanel.add(Box.createVerticalGlue());
         buttonPanel.add(humanButton);
         buttonPanel.add(Box.createVerticalStrut(20));
         buttonPanel.add(computerButton);
+        buttonPanel.add(Box.createVerticalStrut(8));
+        buttonPanel.add(difficultyPanel);
         buttonPanel.add(Box.createVerticalStrut(20));
         buttonPanel.add(loadButton);
         buttonPanel.add(Box.createVerticalGlue());
@@ -77,6 +85,50 @@ public class StartScreen extends JFrame {
             }
         } catch (Exception ignored) {}
     }
+    //difficulty of the computer, one entry per registered strategy
+    private JPanel createDifficultyPanel() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.CENTER, 8, 0));
+        panel.setOpaque(false);
+        JLabel label = new JLabel("Computer difficulty:");
+        label.setFont(new Font("Arial", Font.BOLD, 14));
+        label.setForeground(Color.WHITE);
+        JComboBox<ShotStrategy.Provider> box = new JComboBox<>();
+        for (ShotStrategy.Provider provider : StrategyRegistry.list()) {
+            box.addItem(provider);
+            if (provider.getName().equals(difficulty)) {
+                box.setSelectedItem(provider);
+            }
+        }
+        box.setRenderer(new DefaultListCellRenderer() {
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean selected, boolean focus) {
+                ShotStrategy.Provider provider = (ShotStrategy.Provider) value;
+                super.getListCellRendererComponent(list, provider == null ? "" : provider.getName(), index, selected, focus);
+                setToolTipText(provider == null ? null : provider.getDescription());
+                return this;
+            }
+        });
+        box.addActionListener(e -> {
+            ShotStrategy.Provider provider = (ShotStrategy.Provider) box.getSelectedItem();
+            if (provider != null) {
+                difficulty = provider.getName();
+                box.setToolTipText(provider.getDescription());
+            }
+        });
+        panel.add(label);
+        panel.add(box);
+        JLabel profileLabel = new JLabel("Profile:");
+        profileLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        profileLabel.setForeground(Color.WHITE);
+        profileField = new JTextField(PlacementPrior.defaultProfile(), 8);
+        profileField.setToolTipText("The computer learns where this player likes to put the ships");
+        panel.add(profileLabel);
+        panel.add(profileField);
+        return panel;
+    }
+    private String getProfile() {
+        String profile = profileField.getText().trim();
+        return profile.isEmpty() ? PlacementPrior.defaultProfile() : profile;
+    }
     //style the button 
     private JButton createStyledButton(String text, boolean vsComputer, boolean isLoad) {
         JButton button = new JButton(text) {
@@ -112,8 +164,8 @@ public class StartScreen extends JFrame {
     private void startGame(boolean vsComp) {
         this.vsComputer = vsComp;
         this.dispose();
-        player1 = new HumanPlayer();
-        player2 = vsComputer ? new ComputerPlayer() : new HumanPlayer();
+        player1 = new HumanPlayer(rules);
+        player2 = vsComputer ? StrategyRegistry.createPlayer(difficulty, rules, getProfile()) : new HumanPlayer(rules);
         controller = new GameController(player1, player2);
         showPlayer1Placement();
     }
@@ -122,7 +174,7 @@ public class StartScreen extends JFrame {
         try {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Load Game");
-            fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Battleship Save Files", "bsg"));
+            fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Battleship Save Files and Journals", "bsg", "bsj"));
             int userSelection = fileChooser.showOpenDialog(this);
             if (userSelection == JFileChooser.APPROVE_OPTION) {
                 File fileToLoad = fileChooser.getSelectedFile();
@@ -140,27 +192,12 @@ public class StartScreen extends JFrame {
                     return; 
                 }
                 boolean isVsComputer = (choice == 1);
-                BufferedReader reader = new BufferedReader(new FileReader(fileToLoad));
-                // Create players based on user choice 
-                Player p1 = new HumanPlayer();
-                Player p2 = isVsComputer ? new ComputerPlayer() : new HumanPlayer();
-                String line;
-                int currentPlayerNum = 1;
-                while ((line = reader.readLine()) != null) {
-                    if (line.startsWith("CURRENT_PLAYER:")) {
-                        currentPlayerNum = Integer.parseInt(line.substring("CURRENT_PLAYER:".length()));
-                    } else if (line.equals("PLAYER_1_START")) {
-                        loadPlayerState(reader, p1);
-                    } else if (line.equals("PLAYER_2_START")) {
-                        loadPlayerState(reader, p2);
-                    }
-                }
-                reader.close();
-                GameController loadedController = new GameController(p1, p2);
-                // Set current player
-                while (loadedController.getCurrentPlayer() != (currentPlayerNum == 1 ? p1 : p2)) {
-                    loadedController.switchPlayers();
-                }
+                java.util.function.Function<GameRules, Player> player2Factory = loadedRules ->
+                        isVsComputer ? StrategyRegistry.createPlayer(difficulty, loadedRules, getProfile()) : new HumanPlayer(loadedRules);
+                // a journal is replayed up to its last committed shot, a save file is v2 binary or v1 text; damaged files are reported
+                GameController loadedController = fileToLoad.getName().endsWith(".bsj")
+                        ? MoveJournal.replay(fileToLoad.toPath(), player2Factory)
+                        : GameFile.load(fileToLoad.toPath(), player2Factory);
                 this.dispose();
                 SwingUtilities.invokeLater(() -> {
                     GameWindow window = new GameWindow(loadedController);
@@ -173,48 +210,8 @@ public class StartScreen extends JFrame {
                 "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
-    //load player ship infor
-    private void loadPlayerState(BufferedReader reader, Player player) throws IOException {
-        String line;
-        line = reader.readLine();
-        int shipsCount = Integer.parseInt(line.substring("SHIPS_COUNT:".length()));
-        for (int i = 0; i < shipsCount; i++) {
-            line = reader.readLine();
-            String[] parts = line.substring("SHIP:".length()).split(",");
-            int length = Integer.parseInt(parts[0]);
-            int row = Integer.parseInt(parts[1]);
-            int col = Integer.parseInt(parts[2]);
-            boolean horizontal = Boolean.parseBoolean(parts[3]);
-            int hits = Integer.parseInt(parts[4]);
-            // Place ship on board
-            player.getBoard().placeShip(row, col, length, horizontal);
-            Ship ship = new Ship(length, row, col, horizontal);
-            ship.setHits(hits);
-            player.addShip(ship);
-        }
-        // Load shipGrid
-        line = reader.readLine(); 
-        char[][] shipGrid = player.getBoard().getShipGrid();
-        for (int r = 0; r < 10; r++) {
-            line = reader.readLine();
-            for (int c = 0; c < 10; c++) {
-                shipGrid[r][c] = line.charAt(c);
-            }
-        }
-        // Load infoGrid
-        line = reader.readLine();
-        char[][] infoGrid = player.getBoard().getInfoGrid();
-        for (int r = 0; r < 10; r++) {
-            line = reader.readLine();
-            for (int c = 0; c < 10; c++) {
-                infoGrid[r][c] = line.charAt(c);
-            }
-        }
-        reader.readLine(); // 
-    }
-    
     private void showPlayer1Placement() {
-        new ShipPlacementScreen(true, () -> {
+        new ShipPlacementScreen(rules, true, () -> {
             ShipPlacementScreen currentScreen = null;
             for (Window window : Window.getWindows()) {
                 if (window instanceof ShipPlacementScreen && window.isVisible()) {
@@ -242,7 +239,7 @@ public class StartScreen extends JFrame {
     }
     
     private void showPlayer2Placement() {
-        new ShipPlacementScreen(false, () -> {
+        new ShipPlacementScreen(rules, false, () -> {
             // Store reference to the screen before it closes
             ShipPlacementScreen currentScreen = null;
             for (Window window : Window.getWindows()) {
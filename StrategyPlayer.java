@@ -0,0 +1,170 @@
+// Computer player running a ShotStrategy behind a latency budget. The strategy decides on a worker thread; if it
+// has not answered when the budget runs out (or fails, or picks a cell already shot) the rules AI inherited from
+// ComputerPlayer plays instead, so a slow strategy can never freeze the game. The strategy reads its own copy of the
+// opponent board, kept in step shot by shot; a decision that overran keeps the copy it was given and the next one
+// gets a fresh copy, so no worker ever reads a board the game is changing. A late decision is dropped, and the
+// strategy gets no shot results while it is still busy with it: its own trackers read the new copy afterwards.
+// No new decision starts until the late one has really returned (a cancelled Future is done at once, the worker
+// is not), and the strategy draws from its own generator split from the player's, so the worker and the
+// fallback never share one. Every decision is timed, fallbacks and overruns are counted.
+
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+
+public class StrategyPlayer extends ComputerPlayer
+{
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "strategy-" + count.incrementAndGet());
+            thread.setDaemon(true); // never keeps the game from exiting
+            return thread;
+        }
+    });
+
+    private final String name;
+    private final ShotStrategy strategy;
+    private final long budgetNanos;
+    private transient LatencyStats stats = new LatencyStats();
+    private transient volatile boolean thinking; // a decision is running on a worker, cleared when it returns
+    private transient Board view;       // the strategy's copy of the opponent board, null to copy it again
+    private transient Board viewSource; // the board it copies
+    private transient int viewVersion;  // info version of the source the copy is in step with
+    private long fallbacks;
+    private long overruns;
+
+    // budgetMillis <= 0 runs the strategy on the calling thread without a limit, only timed
+    public StrategyPlayer(GameRules rules, String name, ShotStrategy strategy, long budgetMillis) {
+        super(rules);
+        this.name = name;
+        this.strategy = strategy;
+        this.budgetNanos = budgetMillis > 0 ? budgetMillis * 1_000_000L : 0;
+    }
+
+    @Override
+    public long chooseShotCell(Board opponentBoard) {
+        if (thinking) {
+            fallbacks++; // the strategy is still thinking about an older view
+            return decide(opponentBoard);
+        }
+        long start = System.nanoTime();
+        Board board = viewOf(opponentBoard);
+        long cell;
+        try {
+            if (budgetNanos == 0) {
+                cell = strategy.chooseShotCell(board);
+            } else {
+                thinking = true;
+                AtomicBoolean started = new AtomicBoolean(); // whoever sets it first, the worker or a timeout
+                Future<Long> decision = WORKERS.submit(() -> {
+                    if (!started.compareAndSet(false, true)) {
+                        return (long) NO_SHOT; // timed out before a worker got to it
+                    }
+                    try {
+                        return strategy.chooseShotCell(board);
+                    } finally {
+                        thinking = false; // before the Future completes, so an answer in time leaves it clear
+                    }
+                });
+                try {
+                    cell = decision.get(budgetNanos, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    decision.cancel(true); // interrupts it, thinking stays set until it has returned
+                    if (started.compareAndSet(false, true)) {
+                        thinking = false; // it never ran
+                    }
+                    view = null; // left to the late decision
+                    overruns++;
+                    cell = NO_SHOT;
+                }
+            }
+        } catch (ExecutionException | RuntimeException e) {
+            cell = NO_SHOT; // a broken strategy loses its turn to the fallback, not the game
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cell = NO_SHOT;
+        }
+        getStats().record(System.nanoTime() - start);
+        if (cell == NO_SHOT || cell >= opponentBoard.getRules().getCells() || opponentBoard.isShotCell(cell)) {
+            fallbacks++;
+            return decide(opponentBoard);
+        }
+        return cell;
+    }
+
+    // the copy the strategy reads, made again if the board changed other than by the shots reported
+    private Board viewOf(Board opponentBoard) {
+        if (view == null || viewSource != opponentBoard || viewVersion != opponentBoard.getInfoVersion()) {
+            view = opponentBoard.copy();
+            viewSource = opponentBoard;
+            viewVersion = opponentBoard.getInfoVersion();
+        }
+        return view;
+    }
+
+    @Override
+    public void onShotResult(Board opponentBoard, long cell, int result) {
+        super.onShotResult(opponentBoard, cell, result); // the fallback's target stack
+        if (view == null || viewSource != opponentBoard) {
+            return;
+        }
+        if (opponentBoard.getInfoVersion() == viewVersion + 1) {
+            view.shootCell(cell, null); // the copy has the ships too, so it gets the same result
+            viewVersion++;
+        } else if (opponentBoard.getInfoVersion() != viewVersion) {
+            view = null; // missed a change
+            return;
+        }
+        if (!thinking) {
+            strategy.onShotResult(view, cell, result);
+        }
+    }
+
+    // the fallback uses the generator, the strategy (which may still be running on a worker) a stream split from it
+    @Override
+    public void setRandom(RandomGenerator rand) {
+        super.setRandom(rand);
+        strategy.setRandom(rand instanceof RandomGenerator.SplittableGenerator
+                ? ((RandomGenerator.SplittableGenerator) rand).split()
+                : new SplittableRandom(rand.nextLong()));
+    }
+
+    // the fallback and (if it is a computer player) the strategy hunt with the prior, this player records the games
+    @Override
+    public void setPlacementPrior(PlacementPrior prior) {
+        super.setPlacementPrior(prior);
+        if (strategy instanceof ComputerPlayer) {
+            ((ComputerPlayer) strategy).setPlacementPrior(prior);
+        }
+    }
+
+    // the provider name the player was created from
+    public String getName() {
+        return name;
+    }
+    public ShotStrategy getStrategy() {
+        return strategy;
+    }
+    // time taken by every decision of the strategy, including the ones that ran out of budget
+    public LatencyStats getStats() {
+        if (stats == null) {
+            stats = new LatencyStats(); // not serialized
+        }
+        return stats;
+    }
+    // turns played by the fallback instead of the strategy
+    public long getFallbacks() {
+        return fallbacks;
+    }
+    // decisions that ran past the budget
+    public long getOverruns() {
+        return overruns;
+    }
+    public String toString() {
+        return name + ": " + getStats() + ", " + overruns + " over budget, " + fallbacks + " fallbacks";
+    }
+}
@@ -0,0 +1,157 @@
+// The strategies the computer can play: the built-in difficulty presets, plus every ShotStrategy.Provider
+// found by ServiceLoader (see ShotStrategy). A provider with the name of a preset replaces it.
+// Ordered by level, easiest first.
+
+import java.util.*;
+import java.util.function.Function;
+
+public final class StrategyRegistry
+{
+    public static final String DEFAULT = "Expert"; // what "Play vs Computer" used before there was a choice
+
+    private static volatile List<ShotStrategy.Provider> providers;
+
+    private StrategyRegistry()
+    {
+    }
+
+    public static List<ShotStrategy.Provider> list()
+    {
+        List<ShotStrategy.Provider> list = providers;
+        if (list == null)
+        {
+            synchronized (StrategyRegistry.class)
+            {
+                list = providers;
+                if (list == null)
+                {
+                    list = load();
+                    providers = list;
+                }
+            }
+        }
+        return list;
+    }
+    private static List<ShotStrategy.Provider> load()
+    {
+        Map<String, ShotStrategy.Provider> byName = new LinkedHashMap<>();
+        // second factory: the fixed-work version for Arena, the default sample counts on one worker, no deadlines
+        byName.put("Easy", new Preset("Easy", "Hunts at random, then finishes the ships it hits", 1, 200,
+                ComputerPlayer::new, ComputerPlayer::new));
+        byName.put("Normal", new Preset("Normal", "Hunts at random, solves the last ships exactly", 2, 500,
+                rules -> withEndgame(new ComputerPlayer(rules), EndgameSolver.DEFAULT_BUDGET_MILLIS),
+                rules -> withEndgame(new ComputerPlayer(rules), 0)));
+        byName.put("Hard", new Preset("Hard", "Fires where the most ship placements are still possible", 3, 500,
+                rules -> withEndgame(new DensityComputerPlayer(rules), EndgameSolver.DEFAULT_BUDGET_MILLIS),
+                rules -> withEndgame(new DensityComputerPlayer(rules), 0)));
+        byName.put("Expert", new Preset("Expert", "Samples thousands of fleet layouts on every core", 4,
+                MonteCarloComputerPlayer.DEFAULT_BUDGET_MILLIS + 250,
+                rules -> withEndgame(new MonteCarloComputerPlayer(rules), EndgameSolver.DEFAULT_BUDGET_MILLIS),
+                rules -> withEndgame(new MonteCarloComputerPlayer(rules, MonteCarloComputerPlayer.DEFAULT_SAMPLES, 0, 1), 0)));
+        try
+        {
+            for (ShotStrategy.Provider provider : ServiceLoader.load(ShotStrategy.Provider.class))
+            {
+                byName.put(provider.getName(), provider);
+            }
+        }
+        catch (ServiceConfigurationError e)
+        {
+            System.err.println("Could not load strategy providers: " + e.getMessage());
+        }
+        List<ShotStrategy.Provider> list = new ArrayList<>(byName.values());
+        list.sort(Comparator.comparingInt(ShotStrategy.Provider::getLevel));
+        return Collections.unmodifiableList(list);
+    }
+
+    // the player with the exact search for the last ships turned on, budgetMillis <= 0 for no deadline
+    private static ComputerPlayer withEndgame(ComputerPlayer player, long budgetMillis)
+    {
+        player.setEndgameSolver(new EndgameSolver(EndgameSolver.DEFAULT_MAX_SHIPS, budgetMillis));
+        return player;
+    }
+
+    // provider with the name, null if there is none
+    public static ShotStrategy.Provider find(String name)
+    {
+        for (ShotStrategy.Provider provider : list())
+        {
+            if (provider.getName().equals(name))
+            {
+                return provider;
+            }
+        }
+        return null;
+    }
+    // A computer player for the rules playing the named strategy within its budget (the default if the name is unknown),
+    // learning the placement habits of the profile. The sampling players answer views they have seen from the
+    // shared decision cache (and its opening book); players made by provider.create alone have no cache.
+    public static StrategyPlayer createPlayer(String name, GameRules rules, String profile)
+    {
+        ShotStrategy.Provider provider = find(name);
+        if (provider == null)
+        {
+            provider = find(DEFAULT);
+        }
+        ShotStrategy strategy = provider.create(rules);
+        if (strategy instanceof MonteCarloComputerPlayer)
+        {
+            ((ComputerPlayer) strategy).setDecisionCache(DecisionCache.shared()); // sampling is expensive
+        }
+        StrategyPlayer player = new StrategyPlayer(rules, provider.getName(), strategy, provider.getBudgetMillis());
+        player.setShotHeatmap(ShotHeatmap.shared(rules)); // places the fleet where the humans shoot late
+        player.setPlacementPrior(PlacementPrior.forProfile(profile, rules));
+        return player;
+    }
+
+    // a built-in difficulty
+    private static class Preset implements ShotStrategy.Provider
+    {
+        private final String name;
+        private final String description;
+        private final int level;
+        private final long budgetMillis;
+        private final Function<GameRules, ShotStrategy> factory;
+        private final Function<GameRules, ShotStrategy> fixedFactory;
+
+        Preset(String name, String description, int level, long budgetMillis, Function<GameRules, ShotStrategy> factory,
+                Function<GameRules, ShotStrategy> fixedFactory)
+        {
+            this.name = name;
+            this.description = description;
+            this.level = level;
+            this.budgetMillis = budgetMillis;
+            this.factory = factory;
+            this.fixedFactory = fixedFactory;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+        public String getDescription()
+        {
+            return description;
+        }
+        public int getLevel()
+        {
+            return level;
+        }
+        public long getBudgetMillis()
+        {
+            return budgetMillis;
+        }
+        public ShotStrategy create(GameRules rules)
+        {
+            return factory.apply(rules);
+        }
+        public ShotStrategy createFixed(GameRules rules)
+        {
+            return fixedFactory.apply(rules);
+        }
+        public String toString()
+        {
+            return name;
+        }
+    }
+}